@@ -13,6 +13,17 @@ public class DataLoadProperties {
     private String dir = "./data";
     private String authorsFile = "goodreads_book_authors.json/goodreads_book_authors.json";
     private int batchSize = 500;
+    private int parseThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int writeConcurrency = 4;
+    private boolean singlePassBookScan = true;
+    private boolean offsetIndex = false;
+    private int genreConcurrency = 1;
+    private String loadMode = "full";
+    private String stateDir = "./data/.load-state";
+    private boolean checkpoint = false;
+    private String exportDir = "./data/import";
+    private String sampling = "head";
+    private int similarTopN = 50;
     private List<GenreConfig> genres = new ArrayList<>();
 
     public String getDir() { return dir; }
@@ -21,9 +32,43 @@ public class DataLoadProperties {
     public void setAuthorsFile(String authorsFile) { this.authorsFile = authorsFile; }
     public int getBatchSize() { return batchSize; }
     public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+    public int getParseThreads() { return parseThreads; }
+    public void setParseThreads(int parseThreads) { this.parseThreads = parseThreads; }
+    public int getWriteConcurrency() { return writeConcurrency; }
+    public void setWriteConcurrency(int writeConcurrency) { this.writeConcurrency = writeConcurrency; }
+    public boolean isSinglePassBookScan() { return singlePassBookScan; }
+    public void setSinglePassBookScan(boolean singlePassBookScan) { this.singlePassBookScan = singlePassBookScan; }
+    public boolean isOffsetIndex() { return offsetIndex; }
+    public void setOffsetIndex(boolean offsetIndex) { this.offsetIndex = offsetIndex; }
+    public int getGenreConcurrency() { return genreConcurrency; }
+    public void setGenreConcurrency(int genreConcurrency) { this.genreConcurrency = genreConcurrency; }
+    public String getLoadMode() { return loadMode; }
+    public void setLoadMode(String loadMode) { this.loadMode = loadMode; }
+    public String getStateDir() { return stateDir; }
+    public void setStateDir(String stateDir) { this.stateDir = stateDir; }
+    public boolean isCheckpoint() { return checkpoint; }
+    public void setCheckpoint(boolean checkpoint) { this.checkpoint = checkpoint; }
+    public String getExportDir() { return exportDir; }
+    public void setExportDir(String exportDir) { this.exportDir = exportDir; }
+    public String getSampling() { return sampling; }
+    public void setSampling(String sampling) { this.sampling = sampling; }
+    public int getSimilarTopN() { return similarTopN; }
+    public void setSimilarTopN(int similarTopN) { this.similarTopN = similarTopN; }
     public List<GenreConfig> getGenres() { return genres; }
     public void setGenres(List<GenreConfig> genres) { this.genres = genres; }
 
+    /**
+     * Whether interaction and review budgets are spread over each genre's books
+     * ({@code per-book}) or filled from the head of the files ({@code head}).
+     */
+    public boolean isSampleByBook() {
+        return switch (sampling) {
+            case "per-book" -> true;
+            case "head" -> false;
+            default -> throw new IllegalArgumentException("Unknown sampling: " + sampling);
+        };
+    }
+
     public String getAuthorsPath() { return dir + "/" + authorsFile; }
 
     public static class GenreConfig {
@@ -36,6 +81,8 @@ public class DataLoadProperties {
         private int subsetSize = 15000;
         private int maxInteractions = 30000;
         private int maxReviews = 30000;
+        private String ranking = "ratings-count";
+        private int yearQuota = 0;
 
         public String getName() { return name; }
         public void setName(String name) { this.name = name; }
@@ -55,6 +102,10 @@ public class DataLoadProperties {
         public void setMaxInteractions(int maxInteractions) { this.maxInteractions = maxInteractions; }
         public int getMaxReviews() { return maxReviews; }
         public void setMaxReviews(int maxReviews) { this.maxReviews = maxReviews; }
+        public String getRanking() { return ranking; }
+        public void setRanking(String ranking) { this.ranking = ranking; }
+        public int getYearQuota() { return yearQuota; }
+        public void setYearQuota(int yearQuota) { this.yearQuota = yearQuota; }
 
         public String getBasePath(String dataDir) {
             return dataDir + "/" + folder;
@@ -0,0 +1,73 @@
+package com.bookfinder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "bookfinder.recommendation")
+public class RecommendationProperties {
+
+    /**
+     * Read the graph and shelf strategies from the SIMILAR_SCORED and SHELF_SIMILAR
+     * relationships precomputed at load time. Turn off for databases loaded before they
+     * existed to expand paths per request instead.
+     */
+    private boolean precomputedSimilarity = true;
+    /** Neighbours kept per book in the shelf similarity index. */
+    private int shelfNeighbours = 50;
+    /** Shelves two books must share to be shelf neighbours. */
+    private int shelfMinShared = 3;
+    /**
+     * Serve collaborative filtering from the in-memory {@code CollaborativeIndex}, rebuilt
+     * every {@code bookfinder.recommendation.collaborative-refresh}.
+     */
+    private boolean collaborativeIndex = true;
+    /** How long the hybrid strategy waits for each of its legs before blending without it. */
+    private Duration hybridLegTimeout = Duration.ofSeconds(1);
+    /** Strategies blended by the hybrid strategy, in order. A leg with weight 0 is not run. */
+    private Map<String, HybridLeg> hybrid = new LinkedHashMap<>();
+
+    public RecommendationProperties() {
+        hybrid.put("graph", new HybridLeg(0.4));
+        hybrid.put("shelf", new HybridLeg(0.3));
+        hybrid.put("collaborative", new HybridLeg(0.3));
+    }
+
+    public boolean isPrecomputedSimilarity() { return precomputedSimilarity; }
+    public void setPrecomputedSimilarity(boolean precomputedSimilarity) { this.precomputedSimilarity = precomputedSimilarity; }
+    public int getShelfNeighbours() { return shelfNeighbours; }
+    public void setShelfNeighbours(int shelfNeighbours) { this.shelfNeighbours = shelfNeighbours; }
+    public int getShelfMinShared() { return shelfMinShared; }
+    public void setShelfMinShared(int shelfMinShared) { this.shelfMinShared = shelfMinShared; }
+    public boolean isCollaborativeIndex() { return collaborativeIndex; }
+    public void setCollaborativeIndex(boolean collaborativeIndex) { this.collaborativeIndex = collaborativeIndex; }
+    public Duration getHybridLegTimeout() { return hybridLegTimeout; }
+    public void setHybridLegTimeout(Duration hybridLegTimeout) { this.hybridLegTimeout = hybridLegTimeout; }
+    public Map<String, HybridLeg> getHybrid() { return hybrid; }
+    public void setHybrid(Map<String, HybridLeg> hybrid) { this.hybrid = hybrid; }
+
+    public static class HybridLeg {
+        private double weight;
+        /** Candidates fetched from the strategy per requested result. */
+        private double fetchFactor = 2;
+        /** How the strategy's scores are scaled before weighting: max, rank or z-score. */
+        private String normalization = "max";
+
+        public HybridLeg() {}
+
+        public HybridLeg(double weight) {
+            this.weight = weight;
+        }
+
+        public double getWeight() { return weight; }
+        public void setWeight(double weight) { this.weight = weight; }
+        public double getFetchFactor() { return fetchFactor; }
+        public void setFetchFactor(double fetchFactor) { this.fetchFactor = fetchFactor; }
+        public String getNormalization() { return normalization; }
+        public void setNormalization(String normalization) { this.normalization = normalization; }
+    }
+}
@@ -0,0 +1,50 @@
+package com.bookfinder.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "bookfinder.search")
+public class SearchProperties {
+
+    /**
+     * How long a page total is reused. The data loader clears the cache when it finishes;
+     * the TTL covers loads run from another process, such as a bulk import.
+     */
+    private Duration countCacheTtl = Duration.ofMinutes(10);
+    /** Distinct filters whose totals are kept; the cache is emptied when it fills up. */
+    private int countCacheSize = 10_000;
+    /** Matches counted before an estimated search total stops and reports "at least". */
+    private int estimateCap = 1000;
+    /**
+     * Serve autocomplete from the in-memory prefix index instead of a wildcard full-text
+     * query. Costs a few bytes per word of every title and author name.
+     */
+    private boolean autocompleteIndex = true;
+    /**
+     * Keep each shelf's books in memory and send selective shelf filters to the full-text
+     * query as book ID clauses, instead of checking every hit in Cypher. Genre, rating and
+     * year filters are always checked in Cypher.
+     */
+    private boolean filterIndex = true;
+    /**
+     * Most books a shelf filter may match and still be sent to Lucene as a list of book IDs;
+     * broader shelf filters are checked per hit. Keep well under Lucene's 1024 clause limit.
+     */
+    private int shelfPrefilterMax = 500;
+
+    public Duration getCountCacheTtl() { return countCacheTtl; }
+    public void setCountCacheTtl(Duration countCacheTtl) { this.countCacheTtl = countCacheTtl; }
+    public int getCountCacheSize() { return countCacheSize; }
+    public void setCountCacheSize(int countCacheSize) { this.countCacheSize = countCacheSize; }
+    public int getEstimateCap() { return estimateCap; }
+    public void setEstimateCap(int estimateCap) { this.estimateCap = estimateCap; }
+    public boolean isAutocompleteIndex() { return autocompleteIndex; }
+    public void setAutocompleteIndex(boolean autocompleteIndex) { this.autocompleteIndex = autocompleteIndex; }
+    public boolean isFilterIndex() { return filterIndex; }
+    public void setFilterIndex(boolean filterIndex) { this.filterIndex = filterIndex; }
+    public int getShelfPrefilterMax() { return shelfPrefilterMax; }
+    public void setShelfPrefilterMax(int shelfPrefilterMax) { this.shelfPrefilterMax = shelfPrefilterMax; }
+}
@@ -25,7 +25,8 @@ public class AuthorController {
     public PaginatedResponse<BookSearchResultDTO> getAuthorBooks(
             @PathVariable String authorId,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
-        return authorService.getAuthorBooks(authorId, page, size);
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor) {
+        return authorService.getAuthorBooks(authorId, page, size, cursor);
     }
 }
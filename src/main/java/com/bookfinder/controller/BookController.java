@@ -23,8 +23,9 @@ public class BookController {
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "ratingsCount") String sortBy,
             @RequestParam(defaultValue = "DESC") String direction,
-            @RequestParam(required = false) String genre) {
-        return bookService.getBooks(page, size, sortBy, direction, genre);
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) String cursor) {
+        return bookService.getBooks(page, size, sortBy, direction, genre, cursor);
     }
 
     @GetMapping("/{bookId}")
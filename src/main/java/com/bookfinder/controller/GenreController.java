@@ -27,8 +27,9 @@ public class GenreController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "ratingsCount") String sortBy,
-            @RequestParam(defaultValue = "DESC") String direction) {
-        return genreService.getGenreBooks(genreKey, page, size, sortBy, direction);
+            @RequestParam(defaultValue = "DESC") String direction,
+            @RequestParam(required = false) String cursor) {
+        return genreService.getGenreBooks(genreKey, page, size, sortBy, direction, cursor);
     }
 
     @GetMapping("/{genreKey}/top-shelves")
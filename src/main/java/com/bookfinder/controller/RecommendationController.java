@@ -1,7 +1,11 @@
 package com.bookfinder.controller;
 
+import com.bookfinder.dto.BatchRecommendationRequest;
+import com.bookfinder.dto.BatchRecommendationResponse;
 import com.bookfinder.dto.RecommendationDTO;
 import com.bookfinder.service.RecommendationService;
+import com.bookfinder.service.ShelfSimilarityService;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -11,17 +15,31 @@ import java.util.List;
 public class RecommendationController {
 
     private final RecommendationService recommendationService;
+    private final ShelfSimilarityService shelfSimilarityService;
 
-    public RecommendationController(RecommendationService recommendationService) {
+    public RecommendationController(RecommendationService recommendationService,
+                                    ShelfSimilarityService shelfSimilarityService) {
         this.recommendationService = recommendationService;
+        this.shelfSimilarityService = shelfSimilarityService;
     }
 
     @GetMapping("/similar/{bookId}")
     public List<RecommendationDTO> getSimilar(
             @PathVariable String bookId,
             @RequestParam(defaultValue = "hybrid") String strategy,
-            @RequestParam(defaultValue = "10") int limit) {
-        return recommendationService.getSimilar(bookId, strategy, limit);
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) String weights) {
+        return recommendationService.getSimilar(bookId, strategy, limit, weights);
+    }
+
+    @PostMapping("/similar:batch")
+    public BatchRecommendationResponse getSimilarBatch(@RequestBody BatchRecommendationRequest request) {
+        if (request.isMerge()) {
+            return BatchRecommendationResponse.merged(recommendationService.getSimilarToSet(
+                    request.getBookIds(), request.getStrategy(), request.getLimit(), request.getWeights()));
+        }
+        return BatchRecommendationResponse.perSeed(recommendationService.getSimilar(
+                request.getBookIds(), request.getStrategy(), request.getLimit(), request.getWeights()));
     }
 
     @GetMapping("/readers-also-liked/{bookId}")
@@ -31,6 +49,14 @@ public class RecommendationController {
         return recommendationService.readersAlsoLiked(bookId, limit);
     }
 
+    @GetMapping("/user/{userId}")
+    public ResponseEntity<List<RecommendationDTO>> forUser(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<RecommendationDTO> recs = recommendationService.forUser(userId, limit);
+        return recs != null ? ResponseEntity.ok(recs) : ResponseEntity.notFound().build();
+    }
+
     @GetMapping("/shelf/{shelfName}")
     public List<RecommendationDTO> topInShelf(
             @PathVariable String shelfName,
@@ -44,4 +70,14 @@ public class RecommendationController {
             @RequestParam(defaultValue = "10") int limit) {
         return recommendationService.moreByAuthor(authorId, limit);
     }
+
+    @GetMapping("/shelf-similarity")
+    public ShelfSimilarityService.Status shelfSimilarityStatus() {
+        return shelfSimilarityService.status();
+    }
+
+    @PostMapping("/shelf-similarity/refresh")
+    public ResponseEntity<ShelfSimilarityService.Status> refreshShelfSimilarity() {
+        return ResponseEntity.accepted().body(shelfSimilarityService.refreshAsync());
+    }
 }
@@ -26,8 +26,9 @@ public class SearchController {
             @RequestParam(required = false) Integer minYear,
             @RequestParam(required = false) Integer maxYear,
             @RequestParam(required = false) List<String> shelves,
-            @RequestParam(required = false) String genre) {
-        return searchService.search(q, page, size, minRating, minYear, maxYear, shelves, genre);
+            @RequestParam(required = false) String genre,
+            @RequestParam(defaultValue = "false") boolean estimateTotal) {
+        return searchService.search(q, page, size, minRating, minYear, maxYear, shelves, genre, estimateTotal);
     }
 
     @GetMapping("/autocomplete")
@@ -0,0 +1,22 @@
+package com.bookfinder.dto;
+
+import java.util.List;
+
+public class BatchRecommendationRequest {
+    private List<String> bookIds;
+    private String strategy = "hybrid";
+    private int limit = 10;
+    private String weights;
+    private boolean merge;
+
+    public List<String> getBookIds() { return bookIds; }
+    public void setBookIds(List<String> bookIds) { this.bookIds = bookIds; }
+    public String getStrategy() { return strategy; }
+    public void setStrategy(String strategy) { this.strategy = strategy; }
+    public int getLimit() { return limit; }
+    public void setLimit(int limit) { this.limit = limit; }
+    public String getWeights() { return weights; }
+    public void setWeights(String weights) { this.weights = weights; }
+    public boolean isMerge() { return merge; }
+    public void setMerge(boolean merge) { this.merge = merge; }
+}
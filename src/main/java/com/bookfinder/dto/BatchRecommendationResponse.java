@@ -0,0 +1,28 @@
+package com.bookfinder.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class BatchRecommendationResponse {
+    private Map<String, List<RecommendationDTO>> results;
+    private List<RecommendationDTO> merged;
+
+    public BatchRecommendationResponse() {}
+
+    public static BatchRecommendationResponse perSeed(Map<String, List<RecommendationDTO>> results) {
+        BatchRecommendationResponse response = new BatchRecommendationResponse();
+        response.setResults(results);
+        return response;
+    }
+
+    public static BatchRecommendationResponse merged(List<RecommendationDTO> merged) {
+        BatchRecommendationResponse response = new BatchRecommendationResponse();
+        response.setMerged(merged);
+        return response;
+    }
+
+    public Map<String, List<RecommendationDTO>> getResults() { return results; }
+    public void setResults(Map<String, List<RecommendationDTO>> results) { this.results = results; }
+    public List<RecommendationDTO> getMerged() { return merged; }
+    public void setMerged(List<RecommendationDTO> merged) { this.merged = merged; }
+}
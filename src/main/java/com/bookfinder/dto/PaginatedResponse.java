@@ -8,6 +8,8 @@ public class PaginatedResponse<T> {
     private int size;
     private long totalElements;
     private int totalPages;
+    private boolean totalExact = true;
+    private String nextCursor;
 
     public PaginatedResponse() {}
 
@@ -29,4 +31,8 @@ public class PaginatedResponse<T> {
     public void setTotalElements(long totalElements) { this.totalElements = totalElements; }
     public int getTotalPages() { return totalPages; }
     public void setTotalPages(int totalPages) { this.totalPages = totalPages; }
+    public boolean isTotalExact() { return totalExact; }
+    public void setTotalExact(boolean totalExact) { this.totalExact = totalExact; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
 }
@@ -1,5 +1,7 @@
 package com.bookfinder.dto;
 
+import java.util.List;
+
 public class RecommendationDTO {
     private String bookId;
     private String title;
@@ -11,6 +13,7 @@ public class RecommendationDTO {
     private Double score;
     private String genre;
     private String strategy;
+    private List<String> sources;
 
     public RecommendationDTO() {}
 
@@ -34,4 +37,6 @@ public class RecommendationDTO {
     public void setGenre(String genre) { this.genre = genre; }
     public String getStrategy() { return strategy; }
     public void setStrategy(String strategy) { this.strategy = strategy; }
+    public List<String> getSources() { return sources; }
+    public void setSources(List<String> sources) { this.sources = sources; }
 }
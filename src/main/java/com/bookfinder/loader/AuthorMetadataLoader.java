@@ -1,78 +1,85 @@
 package com.bookfinder.loader;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import org.neo4j.driver.Driver;
-import org.neo4j.driver.Session;
-import org.neo4j.driver.SessionConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AuthorMetadataLoader {
 
     private static final Logger log = LoggerFactory.getLogger(AuthorMetadataLoader.class);
+    static final String[] FIELDS = {"author_id", "name"};
 
-    private final Driver driver;
-    private final String database;
+    private final BatchWriter writer;
     private final int batchSize;
+    private final int parseThreads;
 
-    public AuthorMetadataLoader(Driver driver, String database, int batchSize) {
-        this.driver = driver;
-        this.database = database;
+    public AuthorMetadataLoader(BatchWriter writer, int batchSize, int parseThreads) {
+        this.writer = writer;
         this.batchSize = batchSize;
+        this.parseThreads = parseThreads;
     }
 
     public void loadAuthorNames(String authorsFilePath) throws IOException {
         log.info("Loading author metadata from {}...", authorsFilePath);
 
         List<Map<String, Object>> batch = new ArrayList<>(batchSize);
-        int matched = 0;
-        int scanned = 0;
+        AtomicInteger matched = new AtomicInteger();
+        long scanned = 0;
+        long nextProgress = 100000;
+        JsonProjection projection = JsonProjection.fields(FIELDS);
 
-        try (JsonLineReader reader = new JsonLineReader(authorsFilePath)) {
-            Iterator<JsonNode> it = reader.stream().iterator();
+        try (JsonLineReader reader = new JsonLineReader(authorsFilePath, parseThreads, false)) {
+            Iterator<JsonProjection.Record> it = reader.stream(projection).iterator();
             while (it.hasNext()) {
-                JsonNode node = it.next();
-                scanned++;
+                JsonProjection.Record record = it.next();
+                scanned = reader.linesScanned();
 
-                String authorId = node.path("author_id").asText("");
-                String name = node.path("name").asText("");
-                if (authorId.isEmpty() || name.isEmpty()) continue;
-
-                Map<String, Object> authorMap = new HashMap<>();
-                authorMap.put("authorId", authorId);
-                authorMap.put("name", name);
+                Map<String, Object> authorMap = toRow(record);
+                if (authorMap == null) continue;
                 batch.add(authorMap);
 
                 if (batch.size() >= batchSize) {
-                    matched += flushAuthorNames(batch);
-                    batch.clear();
+                    flushAuthorNames(batch, matched);
+                    batch = new ArrayList<>(batchSize);
                 }
 
-                if (scanned % 100000 == 0) {
+                if (scanned >= nextProgress) {
                     log.info("  Scanned {} authors, matched {} so far...", scanned, matched);
+                    nextProgress += 100000;
                 }
             }
+            scanned = reader.linesScanned();
         }
 
         if (!batch.isEmpty()) {
-            matched += flushAuthorNames(batch);
+            flushAuthorNames(batch, matched);
         }
+        writer.flush();
 
         log.info("Author metadata loaded: scanned {}, updated {} authors with names", scanned, matched);
     }
 
-    private int flushAuthorNames(List<Map<String, Object>> batch) {
-        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-            var result = session.run("""
-                UNWIND $batch AS a
-                MATCH (author:Author {authorId: a.authorId})
-                SET author.name = a.name
-                RETURN count(author) AS updated
-                """, Map.of("batch", batch));
-            return result.single().get("updated").asInt();
-        }
+    /** The row for one author line, or {@code null} if it has no ID or name. */
+    static Map<String, Object> toRow(JsonProjection.Record record) {
+        String authorId = record.text("author_id");
+        String name = record.text("name");
+        if (authorId.isEmpty() || name.isEmpty()) return null;
+
+        Map<String, Object> authorMap = new HashMap<>();
+        authorMap.put("authorId", authorId);
+        authorMap.put("name", name);
+        return authorMap;
+    }
+
+    private void flushAuthorNames(List<Map<String, Object>> batch, AtomicInteger matched) {
+        writer.submit("""
+            UNWIND $batch AS a
+            MATCH (author:Author {authorId: a.authorId})
+            SET author.name = a.name
+            """, batch)
+            .thenAccept(summary -> matched.addAndGet(summary.counters().propertiesSet()));
     }
 }
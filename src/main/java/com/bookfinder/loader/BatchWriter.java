@@ -0,0 +1,168 @@
+package com.bookfinder.loader;
+
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.async.AsyncSession;
+import org.neo4j.driver.async.ResultCursor;
+import org.neo4j.driver.summary.ResultSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes {@code UNWIND $batch} statements through the driver's async session API so the
+ * parse thread can keep reading while batches commit.
+ *
+ * At most {@code concurrency} write transactions are in flight; {@link #submit} blocks
+ * once they are all busy, which is the backpressure the parser sees. Transient errors
+ * (deadlocks between concurrent MERGEs, leader switches) are retried by the driver's
+ * managed transactions and counted in {@link #stats()}.
+ *
+ * When several writers run against the same database (one per genre when genres load
+ * concurrently), rows should be put in {@link #lockOrder} before submitting so that
+ * transactions MERGE-ing the same shared nodes lock them in the same order.
+ */
+public class BatchWriter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchWriter.class);
+
+    private final Driver driver;
+    private final String database;
+    private final int concurrency;
+    private final Semaphore inFlight;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public record Stats(long batches, long rows, long retries, long failures,
+                        double avgLatencyMs, double maxLatencyMs) {
+        @Override
+        public String toString() {
+            return String.format("%d batches, %d rows, %d retries, %d failures, avg %.1f ms, max %.1f ms",
+                    batches, rows, retries, failures, avgLatencyMs, maxLatencyMs);
+        }
+
+        public Stats plus(Stats other) {
+            long count = batches + other.batches;
+            double avg = count == 0 ? 0
+                    : (avgLatencyMs * batches + other.avgLatencyMs * other.batches) / count;
+            return new Stats(count, rows + other.rows, retries + other.retries, failures + other.failures,
+                    avg, Math.max(maxLatencyMs, other.maxLatencyMs));
+        }
+    }
+
+    public BatchWriter(Driver driver, String database, int concurrency) {
+        this.driver = driver;
+        this.database = database;
+        this.concurrency = Math.max(1, concurrency);
+        this.inFlight = new Semaphore(this.concurrency);
+    }
+
+    /**
+     * Runs {@code cypher} with {@code $batch} bound to {@code batch} in its own write
+     * transaction. The list must not be modified after it is handed over.
+     */
+    public CompletableFuture<ResultSummary> submit(String cypher, List<Map<String, Object>> batch) {
+        return submit(cypher, Map.of("batch", batch), batch.size());
+    }
+
+    /**
+     * Runs a single statement and waits for it to commit. Used for the small setup and
+     * linking statements that must be visible before the next phase starts.
+     */
+    public ResultSummary execute(String cypher, Map<String, Object> params) {
+        try {
+            return submit(cypher, params, 0).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Write failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Waits until every submitted batch has committed, then rethrows the first failure.
+     */
+    public void flush() {
+        inFlight.acquireUninterruptibly(concurrency);
+        inFlight.release(concurrency);
+        Throwable error = failure.getAndSet(null);
+        if (error != null) {
+            throw new IllegalStateException("Batch write failed: " + error.getMessage(), error);
+        }
+    }
+
+    /**
+     * Sorts rows by the key their statement MERGEs on (user, author, shelf, ...). Two
+     * transactions touching overlapping keys then acquire node locks in the same order
+     * and cannot deadlock on each other.
+     */
+    public static void lockOrder(List<Map<String, Object>> rows, String key) {
+        rows.sort(Comparator.comparing(row -> String.valueOf(row.get(key))));
+    }
+
+    public Stats stats() {
+        long count = batches.get();
+        return new Stats(count, rows.get(), retries.get(), failures.get(),
+                count == 0 ? 0 : totalLatencyNanos.get() / 1e6 / count,
+                maxLatencyNanos.get() / 1e6);
+    }
+
+    private CompletableFuture<ResultSummary> submit(String cypher, Map<String, Object> params, int rowCount) {
+        Throwable error = failure.get();
+        if (error != null) {
+            throw new IllegalStateException("Batch write failed: " + error.getMessage(), error);
+        }
+
+        inFlight.acquireUninterruptibly();
+        long start = System.nanoTime();
+        AtomicInteger attempts = new AtomicInteger();
+        AsyncSession session;
+        try {
+            session = driver.session(AsyncSession.class, SessionConfig.forDatabase(database));
+        } catch (RuntimeException e) {
+            // No completion stage will release the permit, and a lost permit hangs flush()
+            inFlight.release();
+            throw e;
+        }
+
+        return session.executeWriteAsync(tx -> {
+                    attempts.incrementAndGet();
+                    return tx.runAsync(cypher, params).thenCompose(ResultCursor::consumeAsync);
+                })
+                .whenComplete((summary, e) -> {
+                    long latency = System.nanoTime() - start;
+                    batches.incrementAndGet();
+                    rows.addAndGet(rowCount);
+                    retries.addAndGet(Math.max(0, attempts.get() - 1));
+                    totalLatencyNanos.addAndGet(latency);
+                    maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                    if (e != null) {
+                        failures.incrementAndGet();
+                        failure.compareAndSet(null, e);
+                        log.error("Batch write of {} rows failed: {}", rowCount, e.getMessage());
+                    }
+                })
+                .whenComplete((summary, e) -> session.closeAsync()
+                        .whenComplete((ignored, closeError) -> inFlight.release()))
+                .toCompletableFuture();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        log.info("Batch writer: {}", stats());
+    }
+}
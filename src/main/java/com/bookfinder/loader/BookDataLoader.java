@@ -1,38 +1,128 @@
 package com.bookfinder.loader;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import org.neo4j.driver.Driver;
-import org.neo4j.driver.Session;
-import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.summary.ResultSummary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class BookDataLoader {
 
     private static final Logger log = LoggerFactory.getLogger(BookDataLoader.class);
     private static final int MAX_SHELVES_PER_BOOK = 15;
+    private static final int MAX_PENDING_BATCHES = 4;
     private static final Set<String> ORGANIZATIONAL_SHELVES = Set.of(
             "to-read", "currently-reading", "owned", "books-i-own", "owned-books",
             "i-own", "my-books", "my-library", "have", "library", "kindle",
             "ebooks", "ebook", "e-book", "to-buy", "wish-list", "wishlist",
             "default", "favorites", "favourites", "re-read", "re-reads"
     );
+    static final String[] BOOK_FIELDS = {
+            "title", "title_without_series", "description", "average_rating", "ratings_count",
+            "num_pages", "publisher", "publication_year", "image_url", "url", "work_id",
+            "isbn", "isbn13", "asin", "authors", "series", "popular_shelves", "similar_books"
+    };
 
-    private final Driver driver;
-    private final String database;
+    private final BatchWriter writer;
     private final int batchSize;
+    private final int parseThreads;
 
-    public BookDataLoader(Driver driver, String database, int batchSize) {
-        this.driver = driver;
-        this.database = database;
+    public BookDataLoader(BatchWriter writer, int batchSize, int parseThreads) {
+        this.writer = writer;
         this.batchSize = batchSize;
+        this.parseThreads = parseThreads;
     }
 
     public void loadBooks(String booksFilePath, Set<String> selectedBookIds,
                           String genreKey, String genreName) throws IOException {
+        loadBooks(booksFilePath, selectedBookIds, null, selectedBookIds, genreKey, genreName);
+    }
+
+    /**
+     * Loads a subset selected by {@link SubsetSelector#selectTopBooks}, reading only the
+     * selected lines instead of rescanning the whole books file.
+     */
+    public void loadBooks(String booksFilePath, BookSubset subset,
+                          String genreKey, String genreName) throws IOException {
+        loadBooks(booksFilePath, subset.bookIds(), subset.positions(), subset.bookIds(), genreKey, genreName);
+    }
+
+    /**
+     * Incremental variant: loads only the {@code added} books of {@code subset}, then adds
+     * the SIMILAR_TO edges from the books already in the graph to the new ones.
+     */
+    public void loadAddedBooks(String booksFilePath, BookSubset subset, Set<String> added,
+                               String genreKey, String genreName) throws IOException {
+        loadBooks(booksFilePath, added, subset.restrictTo(added).positions(), subset.bookIds(),
+                genreKey, genreName);
+
+        Set<String> retained = new BookIdSet(subset.size());
+        for (String bookId : subset.bookIds()) {
+            if (!added.contains(bookId)) retained.add(bookId);
+        }
+        List<Map<String, Object>> similarBatch = new ArrayList<>();
+        JsonProjection projection = JsonProjection.fields("similar_books")
+                .filterOnIds("book_id", retained);
+        try (JsonLineReader reader = new JsonLineReader(booksFilePath, parseThreads, false)) {
+            Iterator<JsonProjection.Record> it = reader.streamAt(
+                    subset.restrictTo(retained).positions(), projection).iterator();
+            while (it.hasNext()) {
+                JsonProjection.Record record = it.next();
+                for (JsonNode sim : record.node("similar_books")) {
+                    String simId = sim.asText("");
+                    if (added.contains(simId)) {
+                        Map<String, Object> simMap = new HashMap<>();
+                        simMap.put("bookId", record.text("book_id"));
+                        simMap.put("similarBookId", simId);
+                        similarBatch.add(simMap);
+                    }
+                }
+            }
+        }
+        flushSimilar(similarBatch);
+        writer.flush();
+        log.info("Linked {} similar_to relationships to the added books", similarBatch.size());
+    }
+
+    /**
+     * Removes {@code bookIds} from genre {@code genreKey}. Books that still belong to
+     * another genre only lose the BELONGS_TO edge; the rest are deleted together with
+     * any users, authors, series or shelves left without relationships.
+     */
+    public void removeBooks(Set<String> bookIds, String genreKey) {
+        log.info("Removing {} books from genre '{}'...", bookIds.size(), genreKey);
+        List<String> ids = new ArrayList<>(bookIds);
+        Collections.sort(ids);
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            List<String> sub = ids.subList(i, Math.min(i + batchSize, ids.size()));
+            writer.execute("""
+                UNWIND $ids AS id
+                MATCH (b:Book {bookId: id})-[r:BELONGS_TO]->(:Genre {key: $genreKey})
+                DELETE r
+                """, Map.of("ids", sub, "genreKey", genreKey));
+            writer.execute("""
+                UNWIND $ids AS id
+                MATCH (b:Book {bookId: id})
+                WHERE NOT (b)-[:BELONGS_TO]->(:Genre)
+                OPTIONAL MATCH (b)--(n)
+                WHERE n:User OR n:Author OR n:Series OR n:Shelf
+                WITH b, collect(DISTINCT n) AS neighbours
+                DETACH DELETE b
+                WITH neighbours
+                UNWIND neighbours AS n
+                WITH DISTINCT n
+                WHERE NOT (n)--()
+                DELETE n
+                """, Map.of("ids", sub));
+        }
+    }
+
+    private void loadBooks(String booksFilePath, Set<String> selectedBookIds, long[] positions,
+                           Set<String> similarTargets, String genreKey, String genreName) throws IOException {
         log.info("Loading {} books for genre '{}' into Neo4j...", selectedBookIds.size(), genreName);
 
         // Create Genre node first
@@ -42,229 +132,335 @@ public class BookDataLoader {
         List<Map<String, Object>> authorBatch = new ArrayList<>();
         List<Map<String, Object>> seriesBatch = new ArrayList<>();
         List<Map<String, Object>> shelfBatch = new ArrayList<>();
-        List<Map<String, Object>> similarBatch = new ArrayList<>();
+        ArrayDeque<PendingBatch> pending = new ArrayDeque<>();
+        SimilarPairs similar = new SimilarPairs();
+        long[] relationships = new long[3];
 
         int loaded = 0;
 
-        try (JsonLineReader reader = new JsonLineReader(booksFilePath)) {
-            Iterator<JsonNode> it = reader.stream().iterator();
-            while (it.hasNext()) {
-                JsonNode node = it.next();
-                String bookId = node.path("book_id").asText("");
-                if (!selectedBookIds.contains(bookId)) continue;
-
-                Map<String, Object> bookMap = new HashMap<>();
-                bookMap.put("bookId", bookId);
-                bookMap.put("title", node.path("title").asText(""));
-                bookMap.put("titleClean", node.path("title_without_series").asText(""));
-                bookMap.put("description", truncate(node.path("description").asText(""), 2000));
-                bookMap.put("averageRating", parseDoubleSafe(node.path("average_rating").asText("0")));
-                bookMap.put("ratingsCount", parseIntSafe(node.path("ratings_count").asText("0")));
-                bookMap.put("numPages", parseIntSafe(node.path("num_pages").asText("0")));
-                bookMap.put("publisher", node.path("publisher").asText(""));
-                bookMap.put("pubYear", parseIntSafe(node.path("publication_year").asText("0")));
-                bookMap.put("imageUrl", node.path("image_url").asText(""));
-                bookMap.put("url", node.path("url").asText(""));
-                bookMap.put("workId", node.path("work_id").asText(""));
-                bookMap.put("isbn", node.path("isbn").asText(""));
-                bookMap.put("isbn13", node.path("isbn13").asText(""));
-                bookMap.put("asin", node.path("asin").asText(""));
-                bookMap.put("genre", genreKey);
-                batch.add(bookMap);
-
-                // Collect authors
-                JsonNode authors = node.path("authors");
-                if (authors.isArray()) {
-                    for (JsonNode author : authors) {
-                        Map<String, Object> authorMap = new HashMap<>();
-                        authorMap.put("bookId", bookId);
-                        authorMap.put("authorId", author.path("author_id").asText(""));
-                        authorMap.put("role", author.path("role").asText(""));
-                        authorBatch.add(authorMap);
-                    }
-                }
-
-                // Collect series
-                JsonNode seriesArr = node.path("series");
-                if (seriesArr.isArray()) {
-                    for (JsonNode s : seriesArr) {
-                        String seriesId = s.asText("");
-                        if (!seriesId.isEmpty()) {
-                            Map<String, Object> seriesMap = new HashMap<>();
-                            seriesMap.put("bookId", bookId);
-                            seriesMap.put("seriesId", seriesId);
-                            seriesBatch.add(seriesMap);
-                        }
-                    }
-                }
-
-                // Collect shelves (top 15, excluding organizational)
-                JsonNode shelves = node.path("popular_shelves");
-                if (shelves.isArray()) {
-                    int shelfCount = 0;
-                    for (JsonNode shelf : shelves) {
-                        String shelfName = shelf.path("name").asText("");
-                        if (ORGANIZATIONAL_SHELVES.contains(shelfName)) continue;
-                        int count = parseIntSafe(shelf.path("count").asText("0"));
-                        if (count < 2) continue;
-
-                        Map<String, Object> shelfMap = new HashMap<>();
-                        shelfMap.put("bookId", bookId);
-                        shelfMap.put("name", shelfName);
-                        shelfMap.put("count", count);
-                        shelfBatch.add(shelfMap);
-                        shelfCount++;
-                        if (shelfCount >= MAX_SHELVES_PER_BOOK) break;
-                    }
-                }
+        JsonProjection projection = JsonProjection.fields(BOOK_FIELDS)
+                .filterOnIds("book_id", selectedBookIds);
 
-                // Collect similar books
-                JsonNode similar = node.path("similar_books");
-                if (similar.isArray()) {
-                    for (JsonNode sim : similar) {
-                        String simId = sim.asText("");
-                        if (selectedBookIds.contains(simId)) {
-                            Map<String, Object> simMap = new HashMap<>();
-                            simMap.put("bookId", bookId);
-                            simMap.put("similarBookId", simId);
-                            similarBatch.add(simMap);
-                        }
-                    }
+        try (JsonLineReader reader = new JsonLineReader(booksFilePath, parseThreads, false)) {
+            Iterator<JsonProjection.Record> it = positions != null
+                    ? reader.streamAt(positions, projection).iterator()
+                    : reader.stream(projection).iterator();
+            while (it.hasNext()) {
+                JsonProjection.Record record = it.next();
+                BookRows rows = extract(record, genreKey, similarTargets);
+                batch.add(rows.book());
+                authorBatch.addAll(rows.authors());
+                seriesBatch.addAll(rows.series());
+                shelfBatch.addAll(rows.shelves());
+                for (Map<String, Object> sim : rows.similar()) {
+                    similar.add((String) sim.get("bookId"), (String) sim.get("similarBookId"));
                 }
 
                 loaded++;
                 if (batch.size() >= batchSize) {
-                    flushBooks(batch);
-                    batch.clear();
+                    pending.add(new PendingBatch(flushBooks(batch), authorBatch, seriesBatch, shelfBatch));
+                    batch = new ArrayList<>(batchSize);
+                    authorBatch = new ArrayList<>();
+                    seriesBatch = new ArrayList<>();
+                    shelfBatch = new ArrayList<>();
+                    flushRelationships(pending, MAX_PENDING_BATCHES, relationships);
                     log.info("  Loaded {} books...", loaded);
                 }
             }
         }
 
         if (!batch.isEmpty()) {
-            flushBooks(batch);
+            pending.add(new PendingBatch(flushBooks(batch), authorBatch, seriesBatch, shelfBatch));
         }
+        flushRelationships(pending, 0, relationships);
+        writer.flush();
         log.info("Loaded {} book nodes for genre '{}'", loaded, genreName);
+        log.info("Loaded {} author, {} series and {} shelf relationships",
+                relationships[0], relationships[1], relationships[2]);
 
-        // Flush related data
-        flushAuthors(authorBatch);
-        flushSeries(seriesBatch);
-        flushShelves(shelfBatch);
-        flushSimilar(similarBatch);
-        flushGenreRelationships(genreKey);
+        // SIMILAR_TO needs both books, so it waits until every book batch has committed
+        flushSimilar(similar);
+        writer.flush();
+        log.info("Loaded {} similar_to relationships", similar.size());
+        flushGenreRelationships(selectedBookIds, genreKey);
     }
 
-    private void createGenreNode(String genreKey, String genreName) {
-        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-            session.run("""
-                MERGE (g:Genre {key: $key})
-                SET g.name = $name
-                """, Map.of("key", genreKey, "name", genreName)).consume();
+    /** The rows one book line turns into; also used by {@link BulkExportRunner}. */
+    record BookRows(Map<String, Object> book, List<Map<String, Object>> authors,
+                    List<Map<String, Object>> series, List<Map<String, Object>> shelves,
+                    List<Map<String, Object>> similar) {}
+
+    static BookRows extract(JsonProjection.Record record, String genreKey, Set<String> similarTargets) {
+        String bookId = record.text("book_id");
+        List<Map<String, Object>> authors = new ArrayList<>();
+        List<Map<String, Object>> series = new ArrayList<>();
+        List<Map<String, Object>> shelves = new ArrayList<>();
+        List<Map<String, Object>> similar = new ArrayList<>();
+
+        Map<String, Object> bookMap = new HashMap<>();
+        bookMap.put("bookId", bookId);
+        bookMap.put("title", record.text("title"));
+        bookMap.put("titleClean", record.text("title_without_series"));
+        bookMap.put("description", truncate(record.text("description"), 2000));
+        bookMap.put("averageRating", record.doubleValue("average_rating"));
+        bookMap.put("ratingsCount", record.intValue("ratings_count"));
+        bookMap.put("numPages", record.intValue("num_pages"));
+        bookMap.put("publisher", record.text("publisher"));
+        bookMap.put("pubYear", record.intValue("publication_year"));
+        bookMap.put("imageUrl", record.text("image_url"));
+        bookMap.put("url", record.text("url"));
+        bookMap.put("workId", record.text("work_id"));
+        bookMap.put("isbn", record.text("isbn"));
+        bookMap.put("isbn13", record.text("isbn13"));
+        bookMap.put("asin", record.text("asin"));
+        bookMap.put("genre", genreKey);
+
+        // Collect authors
+        JsonNode authorArr = record.node("authors");
+        if (authorArr.isArray()) {
+            for (JsonNode author : authorArr) {
+                Map<String, Object> authorMap = new HashMap<>();
+                authorMap.put("bookId", bookId);
+                authorMap.put("authorId", author.path("author_id").asText(""));
+                authorMap.put("role", author.path("role").asText(""));
+                authors.add(authorMap);
+            }
         }
+
+        // Collect series
+        JsonNode seriesArr = record.node("series");
+        if (seriesArr.isArray()) {
+            for (JsonNode s : seriesArr) {
+                String seriesId = s.asText("");
+                if (!seriesId.isEmpty()) {
+                    Map<String, Object> seriesMap = new HashMap<>();
+                    seriesMap.put("bookId", bookId);
+                    seriesMap.put("seriesId", seriesId);
+                    series.add(seriesMap);
+                }
+            }
+        }
+
+        // Collect shelves (top 15, excluding organizational)
+        JsonNode shelfArr = record.node("popular_shelves");
+        if (shelfArr.isArray()) {
+            int shelfCount = 0;
+            for (JsonNode shelf : shelfArr) {
+                String shelfName = shelf.path("name").asText("");
+                if (ORGANIZATIONAL_SHELVES.contains(shelfName)) continue;
+                int count = parseIntSafe(shelf.path("count").asText("0"));
+                if (count < 2) continue;
+
+                Map<String, Object> shelfMap = new HashMap<>();
+                shelfMap.put("bookId", bookId);
+                shelfMap.put("name", shelfName);
+                shelfMap.put("count", count);
+                shelves.add(shelfMap);
+                shelfCount++;
+                if (shelfCount >= MAX_SHELVES_PER_BOOK) break;
+            }
+        }
+
+        // Collect similar books
+        JsonNode similarArr = record.node("similar_books");
+        if (similarArr.isArray()) {
+            for (JsonNode sim : similarArr) {
+                String simId = sim.asText("");
+                if (similarTargets.contains(simId)) {
+                    Map<String, Object> simMap = new HashMap<>();
+                    simMap.put("bookId", bookId);
+                    simMap.put("similarBookId", simId);
+                    similar.add(simMap);
+                }
+            }
+        }
+
+        return new BookRows(bookMap, authors, series, shelves, similar);
+    }
+
+    private void createGenreNode(String genreKey, String genreName) {
+        writer.execute("""
+            MERGE (g:Genre {key: $key})
+            SET g.name = $name
+            """, Map.of("key", genreKey, "name", genreName));
         log.info("Created/updated Genre node: {} ({})", genreName, genreKey);
     }
 
-    private void flushBooks(List<Map<String, Object>> batch) {
-        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-            session.run("""
-                UNWIND $batch AS b
-                MERGE (book:Book {bookId: b.bookId})
-                SET book.title = b.title,
-                    book.titleClean = b.titleClean,
-                    book.description = b.description,
-                    book.averageRating = b.averageRating,
-                    book.ratingsCount = b.ratingsCount,
-                    book.numPages = b.numPages,
-                    book.publisher = b.publisher,
-                    book.pubYear = b.pubYear,
-                    book.imageUrl = b.imageUrl,
-                    book.url = b.url,
-                    book.workId = b.workId,
-                    book.isbn = b.isbn,
-                    book.isbn13 = b.isbn13,
-                    book.asin = b.asin,
-                    book.genre = b.genre
-                """, Map.of("batch", batch)).consume();
+    /**
+     * A submitted book batch and the relationships of its books, which are written once the
+     * book nodes have committed.
+     */
+    private record PendingBatch(CompletableFuture<ResultSummary> books, List<Map<String, Object>> authors,
+                                List<Map<String, Object>> series, List<Map<String, Object>> shelves) {}
+
+    /**
+     * Submits the relationships of every pending batch whose books have committed, waiting
+     * for the oldest ones while more than {@code maxPending} remain so memory stays bounded.
+     * WROTE, IN_SERIES and SHELVED_AS touch disjoint shared nodes and go out concurrently.
+     */
+    private void flushRelationships(ArrayDeque<PendingBatch> pending, int maxPending, long[] counts) {
+        while (!pending.isEmpty() && (pending.size() > maxPending || pending.peek().books().isDone())) {
+            PendingBatch next = pending.poll();
+            try {
+                next.books().join();
+            } catch (CompletionException e) {
+                writer.flush(); // rethrows the batch failure
+            }
+            flushAuthors(next.authors());
+            flushSeries(next.series());
+            flushShelves(next.shelves());
+            counts[0] += next.authors().size();
+            counts[1] += next.series().size();
+            counts[2] += next.shelves().size();
         }
     }
 
+    private CompletableFuture<ResultSummary> flushBooks(List<Map<String, Object>> batch) {
+        BatchWriter.lockOrder(batch, "bookId");
+        return writer.submit("""
+            UNWIND $batch AS b
+            MERGE (book:Book {bookId: b.bookId})
+            SET book.title = b.title,
+                book.titleClean = b.titleClean,
+                book.description = b.description,
+                book.averageRating = b.averageRating,
+                book.ratingsCount = b.ratingsCount,
+                book.numPages = b.numPages,
+                book.publisher = b.publisher,
+                book.pubYear = b.pubYear,
+                book.imageUrl = b.imageUrl,
+                book.url = b.url,
+                book.workId = b.workId,
+                book.isbn = b.isbn,
+                book.isbn13 = b.isbn13,
+                book.asin = b.asin,
+                book.genre = b.genre
+            """, batch);
+    }
+
     private void flushAuthors(List<Map<String, Object>> authorBatch) {
-        log.info("Loading {} author relationships...", authorBatch.size());
+        BatchWriter.lockOrder(authorBatch, "authorId");
         for (int i = 0; i < authorBatch.size(); i += batchSize) {
             List<Map<String, Object>> sub = authorBatch.subList(i, Math.min(i + batchSize, authorBatch.size()));
-            try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-                session.run("""
-                    UNWIND $batch AS a
-                    MERGE (author:Author {authorId: a.authorId})
-                    WITH author, a
-                    MATCH (book:Book {bookId: a.bookId})
-                    MERGE (author)-[r:WROTE]->(book)
-                    SET r.role = a.role
-                    """, Map.of("batch", sub)).consume();
-            }
+            writer.submit("""
+                UNWIND $batch AS a
+                MERGE (author:Author {authorId: a.authorId})
+                WITH author, a
+                MATCH (book:Book {bookId: a.bookId})
+                MERGE (author)-[r:WROTE]->(book)
+                SET r.role = a.role
+                """, sub);
         }
-        log.info("Loaded author relationships");
     }
 
     private void flushSeries(List<Map<String, Object>> seriesBatch) {
-        log.info("Loading {} series relationships...", seriesBatch.size());
+        BatchWriter.lockOrder(seriesBatch, "seriesId");
         for (int i = 0; i < seriesBatch.size(); i += batchSize) {
             List<Map<String, Object>> sub = seriesBatch.subList(i, Math.min(i + batchSize, seriesBatch.size()));
-            try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-                session.run("""
-                    UNWIND $batch AS s
-                    MERGE (series:Series {seriesId: s.seriesId})
-                    WITH series, s
-                    MATCH (book:Book {bookId: s.bookId})
-                    MERGE (book)-[:IN_SERIES]->(series)
-                    """, Map.of("batch", sub)).consume();
-            }
+            writer.submit("""
+                UNWIND $batch AS s
+                MERGE (series:Series {seriesId: s.seriesId})
+                WITH series, s
+                MATCH (book:Book {bookId: s.bookId})
+                MERGE (book)-[:IN_SERIES]->(series)
+                """, sub);
         }
-        log.info("Loaded series relationships");
     }
 
     private void flushShelves(List<Map<String, Object>> shelfBatch) {
-        log.info("Loading {} shelf relationships...", shelfBatch.size());
+        BatchWriter.lockOrder(shelfBatch, "name");
         for (int i = 0; i < shelfBatch.size(); i += batchSize) {
             List<Map<String, Object>> sub = shelfBatch.subList(i, Math.min(i + batchSize, shelfBatch.size()));
-            try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-                session.run("""
-                    UNWIND $batch AS s
-                    MERGE (shelf:Shelf {name: s.name})
-                    WITH shelf, s
-                    MATCH (book:Book {bookId: s.bookId})
-                    MERGE (book)-[r:SHELVED_AS]->(shelf)
-                    SET r.count = s.count
-                    """, Map.of("batch", sub)).consume();
-            }
+            writer.submit("""
+                UNWIND $batch AS s
+                MERGE (shelf:Shelf {name: s.name})
+                WITH shelf, s
+                MATCH (book:Book {bookId: s.bookId})
+                MERGE (book)-[r:SHELVED_AS]->(shelf)
+                SET r.count = s.count
+                """, sub);
+        }
+    }
+
+    private void flushSimilar(SimilarPairs similar) {
+        for (int i = 0; i < similar.size(); i += batchSize) {
+            flushSimilar(similar.rows(i, Math.min(i + batchSize, similar.size())));
         }
-        log.info("Loaded shelf relationships");
     }
 
     private void flushSimilar(List<Map<String, Object>> similarBatch) {
-        log.info("Loading {} similar_to relationships...", similarBatch.size());
+        BatchWriter.lockOrder(similarBatch, "bookId");
         for (int i = 0; i < similarBatch.size(); i += batchSize) {
             List<Map<String, Object>> sub = similarBatch.subList(i, Math.min(i + batchSize, similarBatch.size()));
-            try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-                session.run("""
-                    UNWIND $batch AS s
-                    MATCH (b1:Book {bookId: s.bookId})
-                    MATCH (b2:Book {bookId: s.similarBookId})
-                    MERGE (b1)-[:SIMILAR_TO]->(b2)
-                    """, Map.of("batch", sub)).consume();
+            writer.submit("""
+                UNWIND $batch AS s
+                MATCH (b1:Book {bookId: s.bookId})
+                MATCH (b2:Book {bookId: s.similarBookId})
+                MERGE (b1)-[:SIMILAR_TO]->(b2)
+                """, sub);
+        }
+    }
+
+    /**
+     * SIMILAR_TO pairs held until the end of the genre as packed numeric IDs (16 bytes a
+     * pair instead of a map per edge); pairs with non-numeric IDs are kept as strings.
+     */
+    private static final class SimilarPairs {
+        private long[] pairs = new long[1024];
+        private int numeric;
+        private final List<String[]> other = new ArrayList<>();
+
+        void add(String bookId, String similarBookId) {
+            long from = BookIdSet.numericId(bookId);
+            long to = BookIdSet.numericId(similarBookId);
+            if (from < 0 || to < 0) {
+                other.add(new String[]{bookId, similarBookId});
+                return;
             }
+            if (numeric * 2 == pairs.length) pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            pairs[numeric * 2] = from;
+            pairs[numeric * 2 + 1] = to;
+            numeric++;
+        }
+
+        int size() {
+            return numeric + other.size();
+        }
+
+        /** Rows {@code [from, to)} in the shape the SIMILAR_TO statement expects. */
+        List<Map<String, Object>> rows(int from, int to) {
+            List<Map<String, Object>> rows = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                String bookId;
+                String similarBookId;
+                if (i < numeric) {
+                    bookId = Long.toString(pairs[i * 2]);
+                    similarBookId = Long.toString(pairs[i * 2 + 1]);
+                } else {
+                    String[] pair = other.get(i - numeric);
+                    bookId = pair[0];
+                    similarBookId = pair[1];
+                }
+                rows.add(Map.of("bookId", bookId, "similarBookId", similarBookId));
+            }
+            return rows;
         }
-        log.info("Loaded similar_to relationships");
     }
 
-    private void flushGenreRelationships(String genreKey) {
+    /**
+     * Links the genre's own selection rather than {@code b.genre}, which holds whichever
+     * genre wrote a shared book last and so would drop the book from the others.
+     */
+    private void flushGenreRelationships(Set<String> bookIds, String genreKey) {
         log.info("Creating BELONGS_TO relationships for genre '{}'...", genreKey);
-        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-            session.run("""
-                MATCH (b:Book {genre: $genreKey})
+        List<String> ids = new ArrayList<>(bookIds);
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            writer.execute("""
                 MATCH (g:Genre {key: $genreKey})
+                UNWIND $ids AS id
+                MATCH (b:Book {bookId: id})
                 MERGE (b)-[:BELONGS_TO]->(g)
-                """, Map.of("genreKey", genreKey)).consume();
+                """, Map.of("ids", ids.subList(i, Math.min(i + batchSize, ids.size())), "genreKey", genreKey));
         }
         log.info("Created BELONGS_TO relationships for genre '{}'", genreKey);
     }
@@ -277,9 +473,4 @@ public class BookDataLoader {
         try { return Integer.parseInt(value.trim()); }
         catch (NumberFormatException e) { return 0; }
     }
-
-    private static double parseDoubleSafe(String value) {
-        try { return Double.parseDouble(value.trim()); }
-        catch (NumberFormatException e) { return 0.0; }
-    }
 }
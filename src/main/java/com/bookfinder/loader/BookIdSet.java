@@ -0,0 +1,110 @@
+package com.bookfinder.loader;
+
+import java.util.*;
+
+/**
+ * Set of Goodreads book IDs stored as primitive longs. Membership can be tested on the
+ * characters of an ID as they sit in a JSON parser's buffer, so filtering millions of
+ * interaction lines by book never allocates a String for lines that are rejected.
+ *
+ * IDs that are not plain numbers (or would not print back unchanged, like {@code "007"})
+ * are kept in an ordinary {@link HashSet} so the set still behaves like a
+ * {@code Set<String>} for any input.
+ */
+public final class BookIdSet extends AbstractSet<String> {
+
+    private final LongHashSet numeric;
+    private final Set<String> other = new HashSet<>();
+
+    public BookIdSet() {
+        this(1024);
+    }
+
+    public BookIdSet(int expected) {
+        this.numeric = new LongHashSet(expected);
+    }
+
+    /** {@code ids} itself if it already is a {@code BookIdSet}, otherwise a copy. */
+    public static BookIdSet copyOf(Collection<String> ids) {
+        if (ids instanceof BookIdSet set) return set;
+        BookIdSet set = new BookIdSet(ids.size());
+        set.addAll(ids);
+        return set;
+    }
+
+    @Override
+    public boolean add(String id) {
+        long value = numericId(id);
+        return value >= 0 ? numeric.add(value) : other.add(id);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String id)) return false;
+        long value = numericId(id);
+        return value >= 0 ? numeric.contains(value) : other.contains(id);
+    }
+
+    public boolean contains(long id) {
+        return id >= 0 && numeric.contains(id);
+    }
+
+    /** Membership of the ID spelled by {@code chars[offset, offset + length)}. */
+    public boolean contains(char[] chars, int offset, int length) {
+        long value = parse(chars, offset, length);
+        if (value >= 0) return numeric.contains(value);
+        return !other.isEmpty() && other.contains(new String(chars, offset, length));
+    }
+
+    @Override
+    public int size() {
+        return numeric.size() + other.size();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        long[] values = numeric.toArray();
+        Iterator<String> rest = other.iterator();
+        return new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < values.length || rest.hasNext();
+            }
+
+            @Override
+            public String next() {
+                if (i < values.length) return Long.toString(values[i++]);
+                return rest.next();
+            }
+        };
+    }
+
+    /**
+     * The ID as a number if it is all digits and prints back unchanged (no leading zero),
+     * otherwise -1.
+     */
+    static long numericId(String s) {
+        int length = s.length();
+        if (length == 0 || length > 18 || (length > 1 && s.charAt(0) == '0')) return -1;
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static long parse(char[] chars, int offset, int length) {
+        if (length == 0 || length > 18 || (length > 1 && chars[offset] == '0')) return -1;
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,201 @@
+package com.bookfinder.loader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Sidecar index from {@code book_id} to the positions of that book's lines in a
+ * Goodreads JSON-lines file (interactions, reviews).
+ *
+ * The index is built once with a full scan and stored in the load state directory as
+ * {@code <file name>.bookidx}, so the dataset directory can stay read-only: a header
+ * recording the size and modification time of the
+ * source file, followed by a sorted array of longs packing {@code bookId << 37 | position}.
+ * The array is memory-mapped on open, so a lookup is a binary search per selected book
+ * and loading a different subset never rescans the dataset.
+ */
+public final class BookOffsetIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookOffsetIndex.class);
+    // Version 2: zero-padded IDs are rejected rather than folded onto the unpadded ID
+    private static final long MAGIC = 0x424F4F4B49445832L; // "BOOKIDX2"
+    private static final int HEADER_BYTES = 64;
+    private static final int POSITION_BITS = 37;
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+    private static final long MAX_BOOK_ID = (1L << (63 - POSITION_BITS)) - 1;
+    private static final int ENTRIES_PER_SEGMENT = 1 << 27;
+
+    private final LongBuffer[] segments;
+    private final long size;
+
+    private BookOffsetIndex(LongBuffer[] segments, long size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Opens the sidecar for {@code dataFilePath} in {@code indexDir}, building it first if
+     * it is missing or was built from a different version of the file. Returns {@code null}
+     * if the index cannot be built (non-numeric IDs, unwritable directory), in which case
+     * callers should fall back to scanning.
+     */
+    public static BookOffsetIndex openOrBuild(String dataFilePath, Path indexDir, int parseThreads)
+            throws IOException {
+        Path data = Path.of(dataFilePath);
+        Path index = indexDir.resolve(data.getFileName() + ".bookidx");
+        long dataSize = Files.size(data);
+        long dataModified = Files.getLastModifiedTime(data).toMillis();
+
+        if (Files.exists(index)) {
+            BookOffsetIndex existing = open(index, dataSize, dataModified);
+            if (existing != null) {
+                log.info("Using offset index {} ({} entries)", index, existing.size);
+                return existing;
+            }
+            log.info("Offset index {} is stale, rebuilding", index);
+        }
+
+        try {
+            Files.createDirectories(indexDir);
+            build(dataFilePath, index, dataSize, dataModified, parseThreads);
+        } catch (IllegalStateException | IOException e) {
+            log.warn("Could not build offset index for {}: {}", dataFilePath, e.getMessage());
+            return null;
+        }
+        return open(index, dataSize, dataModified);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Positions of every line belonging to one of {@code bookIds}, sorted ascending so
+     * they can be passed straight to {@link JsonLineReader#streamAt}.
+     */
+    public long[] positionsFor(Collection<String> bookIds) {
+        long[] positions = new long[64];
+        int count = 0;
+        for (String bookId : bookIds) {
+            long id = BookIdSet.numericId(bookId);
+            if (id < 0) continue;
+
+            long i = lowerBound(id << POSITION_BITS);
+            while (i < size) {
+                long entry = entry(i++);
+                if (entry >>> POSITION_BITS != id) break;
+                if (count == positions.length) positions = Arrays.copyOf(positions, count * 2);
+                positions[count++] = entry & POSITION_MASK;
+            }
+        }
+        long[] result = Arrays.copyOf(positions, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private long lowerBound(long key) {
+        long lo = 0;
+        long hi = size;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (entry(mid) < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private long entry(long i) {
+        return segments[(int) (i / ENTRIES_PER_SEGMENT)].get((int) (i % ENTRIES_PER_SEGMENT));
+    }
+
+    private static BookOffsetIndex open(Path index, long dataSize, long dataModified) throws IOException {
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) < HEADER_BYTES) return null;
+            header.flip();
+            if (header.getLong() != MAGIC || header.getLong() != dataSize || header.getLong() != dataModified) {
+                return null;
+            }
+            long size = header.getLong();
+            if (channel.size() != HEADER_BYTES + size * Long.BYTES) return null;
+
+            int segmentCount = (int) ((size + ENTRIES_PER_SEGMENT - 1) / ENTRIES_PER_SEGMENT);
+            LongBuffer[] segments = new LongBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                long first = (long) s * ENTRIES_PER_SEGMENT;
+                long entries = Math.min(ENTRIES_PER_SEGMENT, size - first);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                HEADER_BYTES + first * Long.BYTES, entries * Long.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asLongBuffer();
+            }
+            return new BookOffsetIndex(segments, size);
+        }
+    }
+
+    private static void build(String dataFilePath, Path index, long dataSize, long dataModified,
+                              int parseThreads) throws IOException {
+        log.info("Building offset index for {}...", dataFilePath);
+        long start = System.currentTimeMillis();
+        JsonProjection projection = JsonProjection.fields("book_id");
+
+        long[] entries = new long[1 << 20];
+        int count = 0;
+        try (JsonLineReader reader = new JsonLineReader(dataFilePath, parseThreads, false)) {
+            Iterator<long[]> it = reader.streamWithPositions((position, buf, offset, length) -> {
+                JsonProjection.Record record = projection.parse(buf, offset, length);
+                return record == null ? null : new long[]{BookIdSet.numericId(record.text("book_id")), position};
+            }).iterator();
+            while (it.hasNext()) {
+                long[] pair = it.next();
+                if (pair[0] < 0) {
+                    throw new IllegalStateException("non-numeric or zero-padded book_id at position " + pair[1]);
+                }
+                if (pair[0] > MAX_BOOK_ID || pair[1] > POSITION_MASK) {
+                    throw new IllegalStateException("book_id or file position too large to pack: " + pair[0]);
+                }
+                if (count == entries.length) {
+                    if (count == Integer.MAX_VALUE - 8) throw new IllegalStateException("Too many lines to index");
+                    entries = Arrays.copyOf(entries, (int) Math.min(Integer.MAX_VALUE - 8, (long) count * 2));
+                }
+                entries[count++] = pair[0] << POSITION_BITS | pair[1];
+            }
+        }
+        Arrays.parallelSort(entries, 0, count);
+
+        Path tmp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putLong(dataSize).putLong(dataModified).putLong(count);
+            header.clear();
+            channel.write(header);
+
+            ByteBuffer out = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < count; i++) {
+                if (!out.hasRemaining()) {
+                    out.flip();
+                    while (out.hasRemaining()) channel.write(out);
+                    out.clear();
+                }
+                out.putLong(entries[i]);
+            }
+            out.flip();
+            while (out.hasRemaining()) channel.write(out);
+        }
+        Files.move(tmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        log.info("Built offset index {} ({} entries) in {} seconds", index, count,
+                (System.currentTimeMillis() - start) / 1000);
+    }
+}
@@ -0,0 +1,166 @@
+package com.bookfinder.loader;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Picks up to {@code budget} rows in one pass so they are spread evenly over books
+ * rather than taken from the head of the file.
+ *
+ * Every row gets a pseudo-random key derived from its file position, and each book keeps
+ * the rows with the highest keys in a small min-heap (reservoir sampling by priority), so
+ * what a book keeps is a uniform sample of its rows. The budget is then dealt out
+ * round-robin: each book's best row, then each book's second best, and so on. Books with
+ * few rows are kept whole and the rest of the budget is split evenly among the others.
+ *
+ * A book keeps at most {@code HEADROOM} times its even share, which bounds memory to
+ * about {@code HEADROOM * budget} rows however large the file is. Keys depend only on
+ * positions, so the same file always yields the same sample and a checkpointed load can
+ * skip the rows an earlier attempt committed.
+ */
+final class BookQuotaSampler<T> {
+
+    private static final int HEADROOM = 4;
+
+    private final int budget;
+    private final int perBook;
+    private final Map<String, Reservoir> reservoirs = new HashMap<>();
+
+    BookQuotaSampler(int budget, int books) {
+        this.budget = Math.max(0, budget);
+        long share = ((long) this.budget * HEADROOM + books - 1) / Math.max(1, books);
+        this.perBook = (int) Math.max(1, Math.min(this.budget, share));
+    }
+
+    /**
+     * Drains {@code rows} and returns the sampled ones in file order.
+     */
+    static <T> List<T> sample(Iterator<T> rows, Function<T, String> bookId, ToLongFunction<T> position,
+                                  int budget, int books) {
+        BookQuotaSampler<T> sampler = new BookQuotaSampler<>(budget, books);
+        while (rows.hasNext()) {
+            T row = rows.next();
+            sampler.offer(bookId.apply(row), position.applyAsLong(row), row);
+        }
+        return sampler.sample();
+    }
+
+    void offer(String bookId, long position, T row) {
+        if (budget == 0) return;
+        reservoirs.computeIfAbsent(bookId, id -> new Reservoir(perBook)).offer(key(position), position, row);
+    }
+
+    @SuppressWarnings("unchecked")
+    List<T> sample() {
+        List<Reservoir> open = new ArrayList<>(reservoirs.values());
+        for (Reservoir reservoir : open) {
+            reservoir.sortByKey();
+        }
+
+        long[] positions = new long[Math.min(budget, open.stream().mapToInt(r -> r.size).sum())];
+        Object[] rows = new Object[positions.length];
+        int taken = 0;
+        for (int rank = 0; taken < positions.length; rank++) {
+            int r = rank;
+            open.removeIf(reservoir -> reservoir.size <= r);
+            if (open.size() > positions.length - taken) {
+                // Not every book gets a row at this rank; let the keys decide which do
+                open.sort(Comparator.comparingLong((Reservoir reservoir) -> reservoir.keys[r]).reversed());
+            }
+            for (Reservoir reservoir : open) {
+                if (taken == positions.length) break;
+                positions[taken] = reservoir.positions[r];
+                rows[taken++] = reservoir.rows[r];
+            }
+        }
+
+        Integer[] order = new Integer[taken];
+        for (int i = 0; i < taken; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingLong(i -> positions[i]));
+        List<T> sampled = new ArrayList<>(taken);
+        for (int i : order) {
+            sampled.add((T) rows[i]);
+        }
+        return sampled;
+    }
+
+    /** SplitMix64 finalizer: a well-mixed key that depends only on the position. */
+    private static long key(long position) {
+        long z = position * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Min-heap on key holding one book's highest-keyed rows. */
+    private static final class Reservoir {
+        private final int capacity;
+        private long[] keys = new long[2];
+        private long[] positions = new long[2];
+        private Object[] rows = new Object[2];
+        private int size;
+
+        Reservoir(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void offer(long key, long position, Object row) {
+            if (size < capacity) {
+                if (size == keys.length) {
+                    int grown = (int) Math.min(capacity, keys.length * 2L);
+                    keys = Arrays.copyOf(keys, grown);
+                    positions = Arrays.copyOf(positions, grown);
+                    rows = Arrays.copyOf(rows, grown);
+                }
+                set(size, key, position, row);
+                int i = size++;
+                while (i > 0 && keys[(i - 1) >>> 1] > keys[i]) {
+                    swap(i, (i - 1) >>> 1);
+                    i = (i - 1) >>> 1;
+                }
+            } else if (key > keys[0]) {
+                set(0, key, position, row);
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                    if (keys[child] >= keys[i]) break;
+                    swap(i, child);
+                    i = child;
+                }
+            }
+        }
+
+        /** Reorders the entries from highest key to lowest, after which this is no longer a heap. */
+        void sortByKey() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(keys[b], keys[a]));
+            long[] sortedKeys = new long[size];
+            long[] sortedPositions = new long[size];
+            Object[] sortedRows = new Object[size];
+            for (int i = 0; i < size; i++) {
+                sortedKeys[i] = keys[order[i]];
+                sortedPositions[i] = positions[order[i]];
+                sortedRows[i] = rows[order[i]];
+            }
+            keys = sortedKeys;
+            positions = sortedPositions;
+            rows = sortedRows;
+        }
+
+        private void set(int i, long key, long position, Object row) {
+            keys[i] = key;
+            positions[i] = position;
+            rows[i] = row;
+        }
+
+        private void swap(int i, int j) {
+            long k = keys[i]; keys[i] = keys[j]; keys[j] = k;
+            long p = positions[i]; positions[i] = positions[j]; positions[j] = p;
+            Object o = rows[i]; rows[i] = rows[j]; rows[j] = o;
+        }
+    }
+}
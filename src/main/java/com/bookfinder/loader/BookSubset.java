@@ -0,0 +1,37 @@
+package com.bookfinder.loader;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The books chosen by {@link SubsetSelector}, with the file position of each selected
+ * line so the load pass can read just those lines.
+ */
+public record BookSubset(BookIdSet bookIds, Map<String, Long> linePositions) {
+
+    public static BookSubset of(Map<String, Long> linePositions) {
+        BookIdSet bookIds = new BookIdSet(linePositions.size());
+        bookIds.addAll(linePositions.keySet());
+        return new BookSubset(bookIds, linePositions);
+    }
+
+    /** Line positions sorted ascending, as {@link JsonLineReader#streamAt} expects. */
+    public long[] positions() {
+        return linePositions.values().stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    /** The part of this subset whose IDs are in {@code bookIds}. */
+    public BookSubset restrictTo(Set<String> bookIds) {
+        Map<String, Long> restricted = new HashMap<>();
+        for (String bookId : bookIds) {
+            Long position = linePositions.get(bookId);
+            if (position != null) restricted.put(bookId, position);
+        }
+        return of(restricted);
+    }
+
+    public int size() {
+        return linePositions.size();
+    }
+}
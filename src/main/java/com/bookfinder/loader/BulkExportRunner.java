@@ -0,0 +1,349 @@
+package com.bookfinder.loader;
+
+import com.bookfinder.config.DataLoadProperties;
+import com.bookfinder.config.DataLoadProperties.GenreConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Offline alternative to {@link DataLoaderRunner} for full-dataset builds: runs the same
+ * subset selection and row extraction as the loaders, but streams the rows into CSV files
+ * for {@code neo4j-admin database import} instead of MERGE-ing them transactionally.
+ *
+ * Nodes are deduplicated on their IDs. Each genre exports the relationships of all the
+ * books it selects, like the transactional load, which MERGEs them. Relationship rows
+ * can only repeat for books selected by several genres, plus interactions and reviews
+ * listed twice in one file, so only those keys are kept in memory.
+ */
+@Component
+@Profile("bulk-export")
+public class BulkExportRunner implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkExportRunner.class);
+
+    private final DataLoadProperties props;
+
+    private final Set<String> books = new BookIdSet(1 << 16);
+    private final UserIdSet users = new UserIdSet(1 << 16);
+    private final Set<String> series = new BookIdSet();
+    private final Set<String> shelves = new HashSet<>();
+    private final LongHashSet authorIds = new LongHashSet(1 << 16);
+    private final Set<String> otherAuthorIds = new HashSet<>();
+
+    private CsvWriter bookCsv, userCsv, seriesCsv, shelfCsv, genreCsv;
+    private CsvWriter wroteCsv, inSeriesCsv, shelvedAsCsv, similarCsv, belongsToCsv, interactedCsv, reviewedCsv;
+    private final SimilarityScorer similarity = new SimilarityScorer();
+
+    /** Books selected by more than one genre, and the relationships exported for them so far. */
+    private final Set<String> shared = new BookIdSet();
+    private final Set<String> sharedRelationships = new HashSet<>();
+
+    public BulkExportRunner(DataLoadProperties props) {
+        this.props = props;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        long start = System.currentTimeMillis();
+        Path dir = Path.of(props.getExportDir());
+        Files.createDirectories(dir);
+
+        log.info("=== BookFinder Bulk Export ===");
+        log.info("Data directory: {}, export directory: {}", props.getDir(), dir);
+
+        bookCsv = new CsvWriter(dir, "books.csv", "bookId:ID(Book)", "title", "titleClean", "description",
+                "averageRating:float", "ratingsCount:int", "numPages:int", "publisher", "pubYear:int",
+                "imageUrl", "url", "workId", "isbn", "isbn13", "asin", "genre");
+        userCsv = new CsvWriter(dir, "users.csv", "userId:ID(User)");
+        seriesCsv = new CsvWriter(dir, "series.csv", "seriesId:ID(Series)");
+        shelfCsv = new CsvWriter(dir, "shelves.csv", "name:ID(Shelf)");
+        genreCsv = new CsvWriter(dir, "genres.csv", "key:ID(Genre)", "name");
+        wroteCsv = new CsvWriter(dir, "wrote.csv", ":START_ID(Author)", ":END_ID(Book)", "role");
+        inSeriesCsv = new CsvWriter(dir, "in_series.csv", ":START_ID(Book)", ":END_ID(Series)");
+        shelvedAsCsv = new CsvWriter(dir, "shelved_as.csv", ":START_ID(Book)", ":END_ID(Shelf)", "count:int");
+        similarCsv = new CsvWriter(dir, "similar_to.csv", ":START_ID(Book)", ":END_ID(Book)");
+        belongsToCsv = new CsvWriter(dir, "belongs_to.csv", ":START_ID(Book)", ":END_ID(Genre)");
+        interactedCsv = new CsvWriter(dir, "interacted.csv", ":START_ID(User)", ":END_ID(Book)",
+                "isRead:boolean", "rating:int", "dateAdded");
+        reviewedCsv = new CsvWriter(dir, "reviewed.csv", ":START_ID(User)", ":END_ID(Book)", "reviewId",
+                "rating:int", "reviewText", "nVotes:int", "nComments:int", "dateAdded");
+        List<CsvWriter> files = List.of(bookCsv, userCsv, seriesCsv, shelfCsv, genreCsv, wroteCsv, inSeriesCsv,
+                shelvedAsCsv, similarCsv, belongsToCsv, interactedCsv, reviewedCsv);
+
+        try {
+            // Select every genre first, so books shared between genres are known up front
+            Map<GenreConfig, BookSubset> subsets = new LinkedHashMap<>();
+            Set<String> seen = new BookIdSet();
+            for (GenreConfig genre : props.getGenres()) {
+                BookSubset subset = SubsetSelector.selectTopBooks(
+                        genre.getBooksPath(props.getDir()), genre.getSubsetSize(), props.getParseThreads(),
+                        SubsetSelector.Ranking.of(genre.getRanking()), genre.getYearQuota());
+                for (String bookId : subset.bookIds()) {
+                    if (!seen.add(bookId)) shared.add(bookId);
+                }
+                subsets.put(genre, subset);
+            }
+            log.info("{} books selected, {} by more than one genre", seen.size(), shared.size());
+
+            for (var genre : subsets.entrySet()) {
+                exportGenre(genre.getKey(), genre.getValue());
+            }
+            CsvWriter authorCsv = exportAuthors(dir);
+            CsvWriter similarScoredCsv = exportSimilarScored(dir);
+
+            for (CsvWriter file : files) file.close();
+            log.info("=== Bulk export complete in {} seconds ===", (System.currentTimeMillis() - start) / 1000);
+            for (CsvWriter file : files) {
+                log.info("  {}: {} rows", file.path().getFileName(), file.rows());
+            }
+            log.info("  {}: {} rows", authorCsv.path().getFileName(), authorCsv.rows());
+            log.info("  {}: {} rows", similarScoredCsv.path().getFileName(), similarScoredCsv.rows());
+            Files.write(dir.resolve("post-import.cypher"), DataLoaderRunner.schemaStatements());
+            log.info("Import with:\n{}", importCommand());
+            log.info("Then create constraints and indexes by running {}", dir.resolve("post-import.cypher"));
+        } finally {
+            for (CsvWriter file : files) file.close();
+        }
+    }
+
+    private void exportGenre(GenreConfig genre, BookSubset subset) throws IOException {
+        String dataDir = props.getDir();
+        int parseThreads = props.getParseThreads();
+        log.info("--- Exporting genre: {} ({}) ---", genre.getName(), genre.getKey());
+        genreCsv.row(genre.getKey(), genre.getName());
+        Set<String> selected = subset.bookIds();
+
+        int firstSeen = 0;
+        JsonProjection bookProjection = JsonProjection.fields(BookDataLoader.BOOK_FIELDS)
+                .filterOnIds("book_id", selected);
+        try (JsonLineReader reader = new JsonLineReader(genre.getBooksPath(dataDir), parseThreads, false)) {
+            Iterator<JsonProjection.Record> it = reader.streamAt(subset.positions(), bookProjection).iterator();
+            while (it.hasNext()) {
+                BookDataLoader.BookRows rows = BookDataLoader.extract(it.next(), genre.getKey(), selected);
+                String bookId = (String) rows.book().get("bookId");
+                belongsToCsv.row(bookId, genre.getKey());
+                if (books.add(bookId)) {
+                    writeBook(rows.book());
+                    firstSeen++;
+                }
+                writeBookRelationships(rows);
+            }
+        }
+        log.info("  {} books, {} first seen in this genre", selected.size(), firstSeen);
+
+        // (user, book) pairs already written for this genre's books; pairs of shared books
+        // stay in sharedRelationships across genres
+        Set<String> pairs = new HashSet<>();
+
+        String interactionsPath = genre.getInteractionsPath(dataDir);
+        JsonProjection interactionProjection = JsonProjection.fields(InteractionDataLoader.FIELDS)
+                .filterOnIds("book_id", selected);
+        int interactions = 0;
+        try (JsonLineReader reader = new JsonLineReader(interactionsPath, parseThreads, true)) {
+            Iterator<Map<String, Object>> it = rows(reader, interactionsPath, selected, interactionProjection,
+                    InteractionDataLoader::toRow, genre.getMaxInteractions());
+            while (it.hasNext() && interactions < genre.getMaxInteractions()) {
+                Map<String, Object> row = it.next();
+                interactions++;
+                if (!firstPair("INTERACTED", (String) row.get("userId"), (String) row.get("bookId"), pairs)) continue;
+                writeUser((String) row.get("userId"));
+                interactedCsv.row(row.get("userId"), row.get("bookId"), row.get("isRead"),
+                        row.get("rating"), row.get("dateAdded"));
+            }
+        }
+
+        String reviewsPath = genre.getReviewsPath(dataDir);
+        JsonProjection reviewProjection = JsonProjection.fields(ReviewDataLoader.FIELDS)
+                .filterOnIds("book_id", selected);
+        int reviews = 0;
+        try (JsonLineReader reader = new JsonLineReader(reviewsPath, parseThreads, true)) {
+            Iterator<Map<String, Object>> it = rows(reader, reviewsPath, selected, reviewProjection,
+                    ReviewDataLoader::toRow, genre.getMaxReviews());
+            while (it.hasNext() && reviews < genre.getMaxReviews()) {
+                Map<String, Object> row = it.next();
+                reviews++;
+                if (!firstPair("REVIEWED", (String) row.get("userId"), (String) row.get("bookId"), pairs)) continue;
+                writeUser((String) row.get("userId"));
+                reviewedCsv.row(row.get("userId"), row.get("bookId"), row.get("reviewId"), row.get("rating"),
+                        row.get("reviewText"), row.get("nVotes"), row.get("nComments"), row.get("dateAdded"));
+            }
+        }
+        log.info("  {} interactions, {} reviews", interactions, reviews);
+    }
+
+    /**
+     * The non-null rows of the lines for {@code bookIds}, spread over those books with a
+     * {@link BookQuotaSampler} when sampling per book.
+     */
+    private Iterator<Map<String, Object>> rows(JsonLineReader reader, String filePath, Set<String> bookIds,
+                                               JsonProjection projection,
+                                               Function<JsonProjection.Record, Map<String, Object>> toRow,
+                                               int budget) throws IOException {
+        BookOffsetIndex index = props.isOffsetIndex()
+                ? BookOffsetIndex.openOrBuild(filePath, Path.of(props.getStateDir()), props.getParseThreads())
+                : null;
+        JsonLineReader.PositionedLineParser<Line> parser = (position, buf, offset, length) -> {
+            JsonProjection.Record record = projection.parse(buf, offset, length);
+            Map<String, Object> row = record == null ? null : toRow.apply(record);
+            return row == null ? null : new Line(position, row);
+        };
+        Iterator<Line> lines = index != null
+                ? reader.streamAt(index.positionsFor(bookIds), parser).iterator()
+                : reader.streamWithPositions(parser).iterator();
+        if (props.isSampleByBook()) {
+            lines = BookQuotaSampler.sample(lines, line -> (String) line.row().get("bookId"), Line::position,
+                    budget, bookIds.size()).iterator();
+        }
+        Iterator<Line> source = lines;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                return source.next().row();
+            }
+        };
+    }
+
+    private record Line(long position, Map<String, Object> row) {}
+
+    private void writeBook(Map<String, Object> b) {
+        String bookId = (String) b.get("bookId");
+        bookCsv.row(bookId, b.get("title"), b.get("titleClean"), b.get("description"), b.get("averageRating"),
+                b.get("ratingsCount"), b.get("numPages"), b.get("publisher"), b.get("pubYear"), b.get("imageUrl"),
+                b.get("url"), b.get("workId"), b.get("isbn"), b.get("isbn13"), b.get("asin"), b.get("genre"));
+        similarity.book(bookId, (Integer) b.get("ratingsCount"));
+    }
+
+    /** The book's relationships, skipping any the load's MERGE would have collapsed. */
+    private void writeBookRelationships(BookDataLoader.BookRows rows) {
+        String bookId = (String) rows.book().get("bookId");
+        Set<String> written = new HashSet<>();
+        for (Map<String, Object> a : rows.authors()) {
+            String authorId = (String) a.get("authorId");
+            if (authorId.isEmpty() || !first(bookId, "WROTE", authorId, written)) continue;
+            long numeric = BookIdSet.numericId(authorId);
+            if (numeric >= 0) authorIds.add(numeric);
+            else otherAuthorIds.add(authorId);
+            wroteCsv.row(authorId, bookId, a.get("role"));
+        }
+        for (Map<String, Object> s : rows.series()) {
+            String seriesId = (String) s.get("seriesId");
+            if (!first(bookId, "IN_SERIES", seriesId, written)) continue;
+            if (series.add(seriesId)) seriesCsv.row(seriesId);
+            inSeriesCsv.row(bookId, seriesId);
+        }
+        for (Map<String, Object> s : rows.shelves()) {
+            String name = (String) s.get("name");
+            if (!first(bookId, "SHELVED_AS", name, written)) continue;
+            if (shelves.add(name)) shelfCsv.row(name);
+            shelvedAsCsv.row(bookId, name, s.get("count"));
+        }
+        for (Map<String, Object> s : rows.similar()) {
+            String similarBookId = (String) s.get("similarBookId");
+            if (!first(bookId, "SIMILAR_TO", similarBookId, written)) continue;
+            similarCsv.row(bookId, similarBookId);
+            similarity.edge(bookId, similarBookId);
+        }
+    }
+
+    /**
+     * Whether the relationship has not been written yet: neither earlier in this book's
+     * line ({@code written}) nor, for a book selected by several genres, by another genre.
+     */
+    private boolean first(String bookId, String type, String other, Set<String> written) {
+        String key = type + '\0' + bookId + '\0' + other;
+        return written.add(key) && (!shared.contains(bookId) || sharedRelationships.add(key));
+    }
+
+    /** Like {@link #first}, for a user's edge to a book, deduplicated within the genre. */
+    private boolean firstPair(String type, String userId, String bookId, Set<String> genrePairs) {
+        String key = type + '\0' + bookId + '\0' + userId;
+        return shared.contains(bookId) ? sharedRelationships.add(key) : genrePairs.add(key);
+    }
+
+    /**
+     * SIMILAR_SCORED relationships, scored from the SIMILAR_TO edges exported above and
+     * stamped with a generation like the loader's, so a later load replaces them in place.
+     */
+    private CsvWriter exportSimilarScored(Path dir) throws IOException {
+        try (CsvWriter similarScoredCsv = new CsvWriter(dir, "similar_scored.csv",
+                ":START_ID(Book)", ":END_ID(Book)", "paths:int", "generation:long")) {
+            if (props.getSimilarTopN() > 0) {
+                log.info("Scoring similar books over {} SIMILAR_TO edges...", similarity.edges());
+                long generation = System.currentTimeMillis();
+                similarity.score(props.getSimilarTopN(), props.getParseThreads(),
+                        (bookId, similarBookId, paths) -> similarScoredCsv.row(bookId, similarBookId, paths, generation));
+            }
+            return similarScoredCsv;
+        }
+    }
+
+    private void writeUser(String userId) {
+        if (users.add(userId)) userCsv.row(userId);
+    }
+
+    /**
+     * Writes a node for every author referenced by an exported book, named from the
+     * authors file where it has an entry.
+     */
+    private CsvWriter exportAuthors(Path dir) throws IOException {
+        log.info("Exporting {} authors...", authorIds.size() + otherAuthorIds.size());
+        LongHashSet written = new LongHashSet(authorIds.size());
+        Set<String> writtenOther = new HashSet<>();
+        try (CsvWriter authorCsv = new CsvWriter(dir, "authors.csv", "authorId:ID(Author)", "name");
+             JsonLineReader reader = new JsonLineReader(props.getAuthorsPath(), props.getParseThreads(), false)) {
+            Iterator<JsonProjection.Record> it = reader.stream(JsonProjection.fields(AuthorMetadataLoader.FIELDS))
+                    .iterator();
+            while (it.hasNext()) {
+                Map<String, Object> row = AuthorMetadataLoader.toRow(it.next());
+                if (row == null) continue;
+                String authorId = (String) row.get("authorId");
+                long numeric = BookIdSet.numericId(authorId);
+                boolean referenced = numeric >= 0
+                        ? authorIds.contains(numeric) && written.add(numeric)
+                        : otherAuthorIds.contains(authorId) && writtenOther.add(authorId);
+                if (referenced) authorCsv.row(authorId, row.get("name"));
+            }
+            authorIds.forEach(id -> {
+                if (!written.contains(id)) authorCsv.row(Long.toString(id), null);
+            });
+            for (String authorId : otherAuthorIds) {
+                if (!writtenOther.contains(authorId)) authorCsv.row(authorId, null);
+            }
+            return authorCsv;
+        }
+    }
+
+    private String importCommand() {
+        Path dir = Path.of(props.getExportDir()).toAbsolutePath();
+        return String.join(" \\\n    ",
+                "neo4j-admin database import full neo4j --overwrite-destination --multiline-fields=true",
+                "--nodes=Book=" + dir.resolve("books.csv"),
+                "--nodes=Author=" + dir.resolve("authors.csv"),
+                "--nodes=User=" + dir.resolve("users.csv"),
+                "--nodes=Series=" + dir.resolve("series.csv"),
+                "--nodes=Shelf=" + dir.resolve("shelves.csv"),
+                "--nodes=Genre=" + dir.resolve("genres.csv"),
+                "--relationships=WROTE=" + dir.resolve("wrote.csv"),
+                "--relationships=IN_SERIES=" + dir.resolve("in_series.csv"),
+                "--relationships=SHELVED_AS=" + dir.resolve("shelved_as.csv"),
+                "--relationships=SIMILAR_TO=" + dir.resolve("similar_to.csv"),
+                "--relationships=SIMILAR_SCORED=" + dir.resolve("similar_scored.csv"),
+                "--relationships=BELONGS_TO=" + dir.resolve("belongs_to.csv"),
+                "--relationships=INTERACTED=" + dir.resolve("interacted.csv"),
+                "--relationships=REVIEWED=" + dir.resolve("reviewed.csv"));
+    }
+}
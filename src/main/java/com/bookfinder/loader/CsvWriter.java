@@ -0,0 +1,65 @@
+package com.bookfinder.loader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes one CSV file in the format {@code neo4j-admin database import} reads: a header
+ * row of typed column names, strings in double quotes with embedded quotes doubled,
+ * numbers and booleans bare.
+ */
+final class CsvWriter implements AutoCloseable {
+
+    private final Path path;
+    private final Writer out;
+    private long rows;
+
+    CsvWriter(Path dir, String fileName, String... header) throws IOException {
+        this.path = dir.resolve(fileName);
+        this.out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), 1 << 16);
+        writeLine(header, true);
+    }
+
+    void row(Object... values) {
+        writeLine(values, false);
+        rows++;
+    }
+
+    long rows() {
+        return rows;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    private void writeLine(Object[] values, boolean header) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) out.write(',');
+                Object value = values[i];
+                if (value == null) continue;
+                if (header || value instanceof Number || value instanceof Boolean) {
+                    out.write(value.toString());
+                } else {
+                    out.write('"');
+                    out.write(value.toString().replace("\"", "\"\""));
+                    out.write('"');
+                }
+            }
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
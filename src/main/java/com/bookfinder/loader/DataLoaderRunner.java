@@ -2,6 +2,11 @@ package com.bookfinder.loader;
 
 import com.bookfinder.config.DataLoadProperties;
 import com.bookfinder.config.DataLoadProperties.GenreConfig;
+import com.bookfinder.service.AutocompleteIndex;
+import com.bookfinder.service.CollaborativeIndex;
+import com.bookfinder.service.CountCache;
+import com.bookfinder.service.SearchFilterIndex;
+import com.bookfinder.service.ShelfSimilarityService;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Session;
 import org.neo4j.driver.SessionConfig;
@@ -11,7 +16,22 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Component
 @Profile("load-data")
@@ -21,10 +41,22 @@ public class DataLoaderRunner implements CommandLineRunner {
 
     private final Driver driver;
     private final DataLoadProperties props;
+    private final ShelfSimilarityService shelfSimilarity;
+    private final CollaborativeIndex collaborativeIndex;
+    private final CountCache countCache;
+    private final AutocompleteIndex autocompleteIndex;
+    private final SearchFilterIndex searchFilterIndex;
 
-    public DataLoaderRunner(Driver driver, DataLoadProperties props) {
+    public DataLoaderRunner(Driver driver, DataLoadProperties props, ShelfSimilarityService shelfSimilarity,
+                            CollaborativeIndex collaborativeIndex, CountCache countCache,
+                            AutocompleteIndex autocompleteIndex, SearchFilterIndex searchFilterIndex) {
         this.driver = driver;
         this.props = props;
+        this.shelfSimilarity = shelfSimilarity;
+        this.collaborativeIndex = collaborativeIndex;
+        this.countCache = countCache;
+        this.autocompleteIndex = autocompleteIndex;
+        this.searchFilterIndex = searchFilterIndex;
     }
 
     @Override
@@ -35,66 +67,372 @@ public class DataLoaderRunner implements CommandLineRunner {
         log.info("=== BookFinder Multi-Genre Data Loading Pipeline ===");
         log.info("Data directory: {}", props.getDir());
         log.info("Genres to load: {}", props.getGenres().size());
+        log.info("Parse threads: {}, write concurrency: {}", props.getParseThreads(), props.getWriteConcurrency());
 
-        // Step 0: Clear existing data
-        clearDatabase(database);
+        boolean incremental = switch (props.getLoadMode()) {
+            case "full" -> false;
+            case "incremental" -> true;
+            default -> throw new IllegalArgumentException("Unknown load-mode: " + props.getLoadMode());
+        };
+        log.info("Load mode: {}, sampling: {}", props.getLoadMode(), props.isSampleByBook() ? "per-book" : "head");
+
+        // Resuming is opt-in: without it a rerun after a failure clears and reloads, and a
+        // checkpoint left by an earlier run is dropped so a later opt-in cannot pick it up
+        Path checkpointFile = stateDir().resolve("checkpoint.json");
+        if (!props.isCheckpoint() && Files.deleteIfExists(checkpointFile)) {
+            log.info("Discarded checkpoint {} (set LOAD_CHECKPOINT=true to resume instead)", checkpointFile);
+        }
+        LoadCheckpoint checkpoint = props.isCheckpoint()
+                ? LoadCheckpoint.open(checkpointFile, checkpointConfig())
+                : null;
+        boolean resumed = checkpoint != null && checkpoint.isResumed();
+
+        // Step 0: Clear existing data (incremental loads diff against the manifests instead,
+        // and a resumed run keeps what the interrupted one committed)
+        if (!incremental && !resumed) {
+            clearDatabase(database);
+        }
+
+        // Until the load is marked finished, search treats its in-memory shelf index as stale
+        markLoad(database, true);
 
         // Step 1: Create constraints and indexes
         createConstraints(database);
+        if (checkpoint != null && !resumed) {
+            checkpoint.save();
+        }
 
-        // Step 2: Load each genre
-        BookDataLoader bookLoader = new BookDataLoader(driver, database, props.getBatchSize());
-        InteractionDataLoader interactionLoader = new InteractionDataLoader(driver, database, props.getBatchSize());
-        ReviewDataLoader reviewLoader = new ReviewDataLoader(driver, database, props.getBatchSize());
+        // Step 2: Load each genre, several at a time when genre-concurrency > 1
+        int genreConcurrency = Math.max(1, Math.min(props.getGenreConcurrency(), props.getGenres().size()));
+        int parseThreads = Math.max(1, props.getParseThreads() / genreConcurrency);
+        log.info("Genre concurrency: {} ({} parse thread(s) per genre)", genreConcurrency, parseThreads);
 
-        for (GenreConfig genre : props.getGenres()) {
-            long genreStart = System.currentTimeMillis();
-            log.info("--- Loading genre: {} ({}) ---", genre.getName(), genre.getKey());
-            log.info("  Subset size: {}, Max interactions: {}, Max reviews: {}",
-                    genre.getSubsetSize(), genre.getMaxInteractions(), genre.getMaxReviews());
+        long genresStart = System.currentTimeMillis();
+        List<GenreTiming> timings = new ArrayList<>();
+        List<BatchWriter.Stats> writerStats = new ArrayList<>();
+        Map<String, Set<String>> removals = new ConcurrentHashMap<>();
+        Map<String, LoadManifest> manifests = new ConcurrentHashMap<>();
+        ExecutorService genrePool = Executors.newFixedThreadPool(genreConcurrency);
+        try {
+            List<Future<GenreTiming>> futures = new ArrayList<>();
+            for (GenreConfig genre : props.getGenres()) {
+                futures.add(genrePool.submit(() -> {
+                    // Each genre gets its own write lane so flushes only wait for its own batches
+                    try (BatchWriter genreWriter = new BatchWriter(driver, database, props.getWriteConcurrency())) {
+                        GenreTiming timing = loadGenre(genre, genreWriter, parseThreads,
+                                incremental, removals, manifests, checkpoint);
+                        synchronized (writerStats) {
+                            writerStats.add(genreWriter.stats());
+                        }
+                        return timing;
+                    }
+                }));
+            }
+            for (Future<GenreTiming> future : futures) {
+                try {
+                    timings.add(future.get());
+                } catch (ExecutionException e) {
+                    genrePool.shutdownNow();
+                    throw new IllegalStateException("Genre load failed: " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            genrePool.shutdown();
+        }
+        long genresElapsed = System.currentTimeMillis() - genresStart;
 
-            String dataDir = props.getDir();
+        if (!removals.isEmpty()) {
+            try (BatchWriter removalWriter = new BatchWriter(driver, database, 1)) {
+                BookDataLoader remover = new BookDataLoader(removalWriter, props.getBatchSize(), 1);
+                removals.forEach((genreKey, bookIds) -> remover.removeBooks(bookIds, genreKey));
+            }
+        }
+        for (LoadManifest manifest : manifests.values()) {
+            manifest.write(stateDir());
+        }
 
-            // Select top books by ratings_count for this genre
-            Set<String> selectedBookIds = SubsetSelector.selectTopBookIds(
-                    genre.getBooksPath(dataDir), genre.getSubsetSize()
-            );
+        // Step 3: Load author metadata (names) across all genres
+        if (checkpoint == null || !checkpoint.isAuthorsDone()) {
+            log.info("Loading author metadata...");
+            try (BatchWriter writer = new BatchWriter(driver, database, props.getWriteConcurrency())) {
+                AuthorMetadataLoader authorLoader = new AuthorMetadataLoader(
+                        writer, props.getBatchSize(), props.getParseThreads());
+                authorLoader.loadAuthorNames(props.getAuthorsPath());
+                writer.flush();
+                writerStats.add(writer.stats());
+            }
+            if (checkpoint != null) checkpoint.authorsDone();
+        }
 
-            // Load books (nodes + authors + series + shelves + similar + genre relationship)
-            bookLoader.loadBooks(
-                    genre.getBooksPath(dataDir), selectedBookIds,
-                    genre.getKey(), genre.getName()
-            );
+        // Step 4: Precompute SIMILAR_SCORED and SHELF_SIMILAR relationships for the graph and shelf strategies,
+        // and rebuild the in-memory collaborative index so it does not serve the pre-load graph until its next refresh
+        if (props.getSimilarTopN() > 0) {
+            writerStats.add(precomputeSimilarity(database));
+        }
+        shelfSimilarity.refresh();
+        collaborativeIndex.rebuild();
+
+        // Step 5: Create full-text indexes
+        createFullTextIndex(database);
+
+        if (checkpoint != null) {
+            checkpoint.complete();
+        }
+        markLoad(database, false);
+        countCache.invalidate();
+        autocompleteIndex.rebuild();
+        searchFilterIndex.rebuild();
+
+        long elapsed = (System.currentTimeMillis() - start) / 1000;
+        log.info("=== Data loading complete in {} seconds ===", elapsed);
+        printTimingReport(timings, genresElapsed, writerStats);
+
+        // Print summary
+        printSummary(database);
+    }
+
+    private record GenreTiming(String genre, long selectMs, long booksMs,
+                               long interactionsMs, long reviewsMs, long totalMs) {}
 
-            // Load interactions
+    private GenreTiming loadGenre(GenreConfig genre, BatchWriter writer, int parseThreads,
+                                  boolean incremental, Map<String, Set<String>> removals,
+                                  Map<String, LoadManifest> manifests,
+                                  LoadCheckpoint checkpoint) throws IOException {
+        BookDataLoader bookLoader = new BookDataLoader(writer, props.getBatchSize(), parseThreads);
+        InteractionDataLoader interactionLoader = new InteractionDataLoader(
+                writer, props.getBatchSize(), parseThreads, props.isSampleByBook());
+        ReviewDataLoader reviewLoader = new ReviewDataLoader(
+                writer, props.getBatchSize(), parseThreads, props.isSampleByBook());
+
+        long genreStart = System.currentTimeMillis();
+        log.info("--- Loading genre: {} ({}) ---", genre.getName(), genre.getKey());
+        log.info("  Subset size: {}, Max interactions: {}, Max reviews: {}",
+                genre.getSubsetSize(), genre.getMaxInteractions(), genre.getMaxReviews());
+
+        String dataDir = props.getDir();
+        Map<String, LoadManifest.FileFingerprint> files = fingerprints(genre, dataDir);
+        LoadManifest previous = incremental ? LoadManifest.read(stateDir(), genre.getKey()) : null;
+        boolean delta = previous != null && previous.files().equals(files);
+        if (incremental && !delta) {
+            log.info("  {} for '{}', loading the whole genre",
+                    previous == null ? "No load manifest" : "Dataset files changed", genre.getKey());
+        }
+
+        // Select top books by ratings_count for this genre
+        Set<String> selectedBookIds;
+        Set<String> newBookIds;
+        int maxInteractions = genre.getMaxInteractions();
+        int maxReviews = genre.getMaxReviews();
+        long selectMs;
+        long booksStart;
+        Set<String> removed = new HashSet<>();
+        LoadCheckpoint.GenreState state = checkpoint != null ? checkpoint.genre(genre.getKey()) : null;
+        if (state != null && state.phase != LoadCheckpoint.Phase.BOOKS) {
+            // Books were committed by an earlier, interrupted run
+            log.info("  Books already loaded (checkpoint phase {})", state.phase);
+            selectedBookIds = BookIdSet.copyOf(state.bookIds);
+            newBookIds = BookIdSet.copyOf(state.newBookIds);
+            removed.addAll(state.removedBookIds);
+            if (!removed.isEmpty()) removals.put(genre.getKey(), removed);
+            maxInteractions = state.maxInteractions;
+            maxReviews = state.maxReviews;
+            booksStart = genreStart;
+            selectMs = 0;
+        } else {
+            if (incremental || props.isSinglePassBookScan()) {
+                // Remember where the selected lines are so the load reads only those
+                BookSubset subset = SubsetSelector.selectTopBooks(
+                        genre.getBooksPath(dataDir), genre.getSubsetSize(), parseThreads,
+                        SubsetSelector.Ranking.of(genre.getRanking()), genre.getYearQuota()
+                );
+                selectedBookIds = subset.bookIds();
+                newBookIds = selectedBookIds;
+                booksStart = System.currentTimeMillis();
+                selectMs = booksStart - genreStart;
+
+                // Without a manifest the genre's books in the graph are what was loaded before
+                Collection<String> loadedBefore = previous != null ? previous.bookIds()
+                        : incremental ? genreBookIds(genre.getKey()) : List.of();
+                if (!loadedBefore.isEmpty()) {
+                    removed.addAll(loadedBefore);
+                    removed.removeAll(selectedBookIds);
+                    // Applied once every genre has loaded, so books shared with another genre survive
+                    if (!removed.isEmpty()) removals.put(genre.getKey(), removed);
+                }
+
+                if (delta) {
+                    Set<String> previousIds = BookIdSet.copyOf(previous.bookIds());
+                    newBookIds = new BookIdSet();
+                    for (String bookId : selectedBookIds) {
+                        if (!previousIds.contains(bookId)) newBookIds.add(bookId);
+                    }
+                    log.info("  Incremental: {} books added, {} removed, {} unchanged", newBookIds.size(),
+                            removed.size(), selectedBookIds.size() - newBookIds.size());
+                    if (!newBookIds.isEmpty()) {
+                        bookLoader.loadAddedBooks(genre.getBooksPath(dataDir), subset, newBookIds,
+                                genre.getKey(), genre.getName());
+                    }
+                    maxInteractions -= existingRelationships("INTERACTED", genre.getKey(), removed);
+                    maxReviews -= existingRelationships("REVIEWED", genre.getKey(), removed);
+                } else {
+                    // Load books (nodes + authors + series + shelves + similar + genre relationship)
+                    bookLoader.loadBooks(
+                            genre.getBooksPath(dataDir), subset,
+                            genre.getKey(), genre.getName()
+                    );
+                    if (incremental) {
+                        // The graph was not cleared, so edges from the earlier load count towards the budget
+                        maxInteractions -= existingRelationships("INTERACTED", genre.getKey(), removed);
+                        maxReviews -= existingRelationships("REVIEWED", genre.getKey(), removed);
+                        log.info("  Reloading over the previous load: {} books to remove, budget left {} interactions, {} reviews",
+                                removed.size(), Math.max(0, maxInteractions), Math.max(0, maxReviews));
+                    }
+                }
+            } else {
+                selectedBookIds = SubsetSelector.selectTopBooks(
+                        genre.getBooksPath(dataDir), genre.getSubsetSize(), parseThreads,
+                        SubsetSelector.Ranking.of(genre.getRanking()), genre.getYearQuota()
+                ).bookIds();
+                newBookIds = selectedBookIds;
+                booksStart = System.currentTimeMillis();
+                selectMs = booksStart - genreStart;
+                bookLoader.loadBooks(
+                        genre.getBooksPath(dataDir), selectedBookIds,
+                        genre.getKey(), genre.getName()
+                );
+            }
+
+            if (state != null) {
+                checkpoint.booksLoaded(state, selectedBookIds, newBookIds, removed, maxInteractions, maxReviews);
+            }
+        }
+        long interactionsStart = System.currentTimeMillis();
+
+        // Load interactions (only for new books, within what is left of the budget, in delta mode)
+        if (!newBookIds.isEmpty() && maxInteractions > 0 && pending(state, LoadCheckpoint.Phase.INTERACTIONS)) {
             interactionLoader.loadInteractions(
-                    genre.getInteractionsPath(dataDir), selectedBookIds,
-                    genre.getMaxInteractions()
+                    genre.getInteractionsPath(dataDir), newBookIds, maxInteractions,
+                    indexedPositions(genre.getInteractionsPath(dataDir), newBookIds, parseThreads),
+                    state != null ? checkpoint.progress(state, "interactions") : null
             );
+        }
+        if (state != null && state.phase == LoadCheckpoint.Phase.INTERACTIONS) {
+            checkpoint.advance(state, LoadCheckpoint.Phase.REVIEWS);
+        }
+        long reviewsStart = System.currentTimeMillis();
 
-            // Load reviews
+        // Load reviews
+        if (!newBookIds.isEmpty() && maxReviews > 0 && pending(state, LoadCheckpoint.Phase.REVIEWS)) {
             reviewLoader.loadReviews(
-                    genre.getReviewsPath(dataDir), selectedBookIds,
-                    genre.getMaxReviews()
+                    genre.getReviewsPath(dataDir), newBookIds, maxReviews,
+                    indexedPositions(genre.getReviewsPath(dataDir), newBookIds, parseThreads),
+                    state != null ? checkpoint.progress(state, "reviews") : null
             );
+        }
+        if (state != null) {
+            checkpoint.advance(state, LoadCheckpoint.Phase.DONE);
+        }
+        long end = System.currentTimeMillis();
+
+        List<String> bookIds = new ArrayList<>(selectedBookIds);
+        Collections.sort(bookIds);
+        manifests.put(genre.getKey(), new LoadManifest(genre.getKey(), genre.getSubsetSize(), bookIds, files));
 
-            long genreElapsed = (System.currentTimeMillis() - genreStart) / 1000;
-            log.info("--- Genre '{}' loaded in {} seconds ---", genre.getName(), genreElapsed);
+        log.info("--- Genre '{}' loaded in {} seconds ({}) ---",
+                genre.getName(), (end - genreStart) / 1000, writer.stats());
+        return new GenreTiming(genre.getName(), selectMs, interactionsStart - booksStart,
+                reviewsStart - interactionsStart, end - reviewsStart, end - genreStart);
+    }
+
+    /** Whether {@code phase} still has to run for a genre at checkpoint {@code state}. */
+    private static boolean pending(LoadCheckpoint.GenreState state, LoadCheckpoint.Phase phase) {
+        return state == null || state.phase.compareTo(phase) <= 0;
+    }
+
+    /**
+     * Identifies the settings a checkpoint was written under; resuming with different
+     * genres or budgets would leave a mix of both in the graph.
+     */
+    private String checkpointConfig() {
+        StringBuilder config = new StringBuilder(props.getLoadMode()).append(':').append(props.getSampling());
+        for (GenreConfig genre : props.getGenres()) {
+            config.append(';').append(genre.getKey()).append(':').append(genre.getSubsetSize())
+                    .append(':').append(genre.getRanking()).append(':').append(genre.getYearQuota())
+                    .append(':').append(genre.getMaxInteractions()).append(':').append(genre.getMaxReviews());
         }
+        return config.toString();
+    }
 
-        // Step 3: Load author metadata (names) across all genres
-        log.info("Loading author metadata...");
-        AuthorMetadataLoader authorLoader = new AuthorMetadataLoader(driver, database, props.getBatchSize());
-        authorLoader.loadAuthorNames(props.getAuthorsPath());
+    private Map<String, LoadManifest.FileFingerprint> fingerprints(GenreConfig genre, String dataDir) throws IOException {
+        Map<String, LoadManifest.FileFingerprint> files = new TreeMap<>();
+        files.put("books", LoadManifest.FileFingerprint.of(genre.getBooksPath(dataDir)));
+        files.put("interactions", LoadManifest.FileFingerprint.of(genre.getInteractionsPath(dataDir)));
+        files.put("reviews", LoadManifest.FileFingerprint.of(genre.getReviewsPath(dataDir)));
+        return files;
+    }
 
-        // Step 4: Create full-text indexes
-        createFullTextIndex(database);
+    /**
+     * Number of {@code relType} relationships already loaded for the genre's books, not
+     * counting books about to be removed. Used to top up the budget incrementally.
+     */
+    private int existingRelationships(String relType, String genreKey, Set<String> removed) {
+        try (Session session = driver.session(SessionConfig.forDatabase("neo4j"))) {
+            return session.run("""
+                MATCH (:Genre {key: $genreKey})<-[:BELONGS_TO]-(b:Book)<-[r:%s]-(:User)
+                WHERE NOT b.bookId IN $removed
+                RETURN count(r) AS cnt
+                """.formatted(relType), Map.of("genreKey", genreKey, "removed", List.copyOf(removed)))
+                    .single().get("cnt").asInt();
+        }
+    }
 
-        long elapsed = (System.currentTimeMillis() - start) / 1000;
-        log.info("=== Data loading complete in {} seconds ===", elapsed);
+    /** Books currently linked to the genre, for an incremental load with no manifest to diff. */
+    private Set<String> genreBookIds(String genreKey) {
+        Set<String> bookIds = new BookIdSet();
+        try (Session session = driver.session(SessionConfig.forDatabase("neo4j"))) {
+            var result = session.run("""
+                MATCH (:Genre {key: $genreKey})<-[:BELONGS_TO]-(b:Book)
+                RETURN b.bookId AS bookId
+                """, Map.of("genreKey", genreKey));
+            while (result.hasNext()) bookIds.add(result.next().get("bookId").asString());
+        }
+        return bookIds;
+    }
 
-        // Print summary
-        printSummary(database);
+    private Path stateDir() {
+        return Path.of(props.getStateDir());
+    }
+
+    private void printTimingReport(List<GenreTiming> timings, long genresElapsedMs,
+                                   List<BatchWriter.Stats> writerStats) {
+        log.info("--- Genre timings (seconds) ---");
+        log.info(String.format("  %-28s %8s %8s %8s %8s %8s",
+                "genre", "select", "books", "interact", "reviews", "total"));
+        long sum = 0;
+        for (GenreTiming t : timings) {
+            log.info(String.format("  %-28s %8.1f %8.1f %8.1f %8.1f %8.1f", t.genre(),
+                    t.selectMs() / 1000.0, t.booksMs() / 1000.0, t.interactionsMs() / 1000.0,
+                    t.reviewsMs() / 1000.0, t.totalMs() / 1000.0));
+            sum += t.totalMs();
+        }
+        log.info("  Genres took {} s wall clock for {} s of genre time", genresElapsedMs / 1000, sum / 1000);
+        BatchWriter.Stats total = writerStats.stream()
+                .reduce(new BatchWriter.Stats(0, 0, 0, 0, 0, 0), BatchWriter.Stats::plus);
+        log.info("  Writes: {}", total);
+    }
+
+    /**
+     * Line positions of the selected books from the file's offset index, or {@code null}
+     * to scan the file when indexing is disabled or the index cannot be built.
+     */
+    private long[] indexedPositions(String filePath, Set<String> selectedBookIds,
+                                    int parseThreads) throws IOException {
+        if (!props.isOffsetIndex()) return null;
+        BookOffsetIndex index = BookOffsetIndex.openOrBuild(filePath, stateDir(), parseThreads);
+        if (index == null) return null;
+        long[] positions = index.positionsFor(selectedBookIds);
+        log.info("  Offset index: {} lines for {} selected books", positions.length, selectedBookIds.size());
+        return positions;
     }
 
     private void clearDatabase(String database) {
@@ -124,33 +462,140 @@ public class DataLoaderRunner implements CommandLineRunner {
         }
     }
 
+    private static final List<String> CONSTRAINTS = List.of(
+            "CREATE CONSTRAINT book_id IF NOT EXISTS FOR (b:Book) REQUIRE b.bookId IS UNIQUE",
+            "CREATE CONSTRAINT author_id IF NOT EXISTS FOR (a:Author) REQUIRE a.authorId IS UNIQUE",
+            "CREATE CONSTRAINT user_id IF NOT EXISTS FOR (u:User) REQUIRE u.userId IS UNIQUE",
+            "CREATE CONSTRAINT shelf_name IF NOT EXISTS FOR (s:Shelf) REQUIRE s.name IS UNIQUE",
+            "CREATE CONSTRAINT series_id IF NOT EXISTS FOR (s:Series) REQUIRE s.seriesId IS UNIQUE",
+            "CREATE CONSTRAINT genre_key IF NOT EXISTS FOR (g:Genre) REQUIRE g.key IS UNIQUE",
+
+            "CREATE INDEX book_title IF NOT EXISTS FOR (b:Book) ON (b.title)",
+            "CREATE INDEX book_pub_year IF NOT EXISTS FOR (b:Book) ON (b.pubYear)",
+            "CREATE INDEX book_avg_rating IF NOT EXISTS FOR (b:Book) ON (b.averageRating)",
+            "CREATE INDEX book_ratings_count IF NOT EXISTS FOR (b:Book) ON (b.ratingsCount)",
+            "CREATE INDEX book_genre IF NOT EXISTS FOR (b:Book) ON (b.genre)",
+            "CREATE INDEX similar_scored_generation IF NOT EXISTS FOR ()-[r:SIMILAR_SCORED]-() ON (r.generation)"
+    );
+
+    private static final String FULLTEXT_INDEX = """
+        CREATE FULLTEXT INDEX bookSearch IF NOT EXISTS
+        FOR (b:Book)
+        ON EACH [b.title, b.titleClean, b.description, b.publisher, b.bookId]
+        """;
+
+    /** Constraint and index statements as a Cypher script, for databases built by bulk import. */
+    static List<String> schemaStatements() {
+        List<String> statements = new ArrayList<>();
+        for (String statement : CONSTRAINTS) statements.add(statement + ";");
+        statements.add(FULLTEXT_INDEX.strip() + ";");
+        return statements;
+    }
+
     private void createConstraints(String database) {
         log.info("Creating constraints and indexes...");
         try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-            session.run("CREATE CONSTRAINT book_id IF NOT EXISTS FOR (b:Book) REQUIRE b.bookId IS UNIQUE").consume();
-            session.run("CREATE CONSTRAINT author_id IF NOT EXISTS FOR (a:Author) REQUIRE a.authorId IS UNIQUE").consume();
-            session.run("CREATE CONSTRAINT user_id IF NOT EXISTS FOR (u:User) REQUIRE u.userId IS UNIQUE").consume();
-            session.run("CREATE CONSTRAINT shelf_name IF NOT EXISTS FOR (s:Shelf) REQUIRE s.name IS UNIQUE").consume();
-            session.run("CREATE CONSTRAINT series_id IF NOT EXISTS FOR (s:Series) REQUIRE s.seriesId IS UNIQUE").consume();
-            session.run("CREATE CONSTRAINT genre_key IF NOT EXISTS FOR (g:Genre) REQUIRE g.key IS UNIQUE").consume();
-
-            session.run("CREATE INDEX book_title IF NOT EXISTS FOR (b:Book) ON (b.title)").consume();
-            session.run("CREATE INDEX book_pub_year IF NOT EXISTS FOR (b:Book) ON (b.pubYear)").consume();
-            session.run("CREATE INDEX book_avg_rating IF NOT EXISTS FOR (b:Book) ON (b.averageRating)").consume();
-            session.run("CREATE INDEX book_ratings_count IF NOT EXISTS FOR (b:Book) ON (b.ratingsCount)").consume();
-            session.run("CREATE INDEX book_genre IF NOT EXISTS FOR (b:Book) ON (b.genre)").consume();
+            for (String statement : CONSTRAINTS) {
+                session.run(statement).consume();
+            }
         }
         log.info("Constraints and indexes created");
     }
 
+    /**
+     * Replaces every book's SIMILAR_SCORED relationships with its top similar-top-n books
+     * over one and two SIMILAR_TO hops, weighted by path count. Recomputed from the whole
+     * graph on every run, so incremental and resumed loads stay consistent. The new set is
+     * written under a fresh generation before the older ones are deleted, so the graph
+     * strategy keeps reading the previous set until then.
+     */
+    private BatchWriter.Stats precomputeSimilarity(String database) {
+        log.info("Precomputing graph similarity (top {} per book)...", props.getSimilarTopN());
+        long stageStart = System.currentTimeMillis();
+        SimilarityScorer scorer = new SimilarityScorer();
+        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
+            var books = session.run("MATCH (b:Book) RETURN b.bookId AS id, coalesce(b.ratingsCount, 0) AS ratings");
+            while (books.hasNext()) {
+                var record = books.next();
+                scorer.book(record.get("id").asString(), record.get("ratings").asInt());
+            }
+            var edges = session.run("MATCH (a:Book)-[:SIMILAR_TO]->(b:Book) RETURN a.bookId AS from, b.bookId AS to");
+            while (edges.hasNext()) {
+                var record = edges.next();
+                scorer.edge(record.get("from").asString(), record.get("to").asString());
+            }
+        }
+        log.info("  Read {} books and {} SIMILAR_TO edges", scorer.books(), scorer.edges());
+
+        String cypher = """
+            UNWIND $batch AS s
+            MATCH (b1:Book {bookId: s.bookId})
+            MATCH (b2:Book {bookId: s.similarBookId})
+            CREATE (b1)-[:SIMILAR_SCORED {paths: s.paths, generation: s.generation}]->(b2)
+            """;
+        long generation = System.currentTimeMillis();
+        try (BatchWriter writer = new BatchWriter(driver, database, props.getWriteConcurrency())) {
+            List<Map<String, Object>> batch = new ArrayList<>(props.getBatchSize());
+            scorer.score(props.getSimilarTopN(), props.getParseThreads(), (bookId, similarBookId, paths) -> {
+                batch.add(Map.of("bookId", bookId, "similarBookId", similarBookId, "paths", paths,
+                        "generation", generation));
+                if (batch.size() >= props.getBatchSize()) {
+                    writer.submit(cypher, new ArrayList<>(batch));
+                    batch.clear();
+                }
+            });
+            if (!batch.isEmpty()) {
+                writer.submit(cypher, new ArrayList<>(batch));
+            }
+            writer.flush();
+            long deleted = deleteOlderGeneration(database, "SIMILAR_SCORED", generation);
+            log.info("  Wrote {} SIMILAR_SCORED relationships and deleted {} older ones in {} ms",
+                    writer.stats().rows(), deleted, System.currentTimeMillis() - stageStart);
+            return writer.stats();
+        }
+    }
+
+    /**
+     * Deletes {@code type} relationships from before {@code generation}, 10,000 at a time:
+     * first through the generation index, then any written before generations existed.
+     */
+    private long deleteOlderGeneration(String database, String type, long generation) {
+        long total = 0;
+        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
+            for (String older : List.of("r.generation < $generation", "r.generation IS NULL")) {
+                long deleted = 1;
+                while (deleted > 0) {
+                    deleted = session.run("""
+                        MATCH ()-[r:%s]->()
+                        WHERE %s
+                        WITH r LIMIT 10000
+                        DELETE r
+                        RETURN count(r) AS cnt
+                        """.formatted(type, older), Map.of("generation", generation)).single().get("cnt").asLong();
+                    total += deleted;
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Stamps the graph with a fresh load generation, flagged while the load runs, so a
+     * {@link SearchFilterIndex} in any process can tell its snapshot predates the load.
+     */
+    private void markLoad(String database, boolean loading) {
+        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
+            session.run("""
+                MERGE (state:LoadState {key: 'graph'})
+                SET state.generation = randomUUID(), state.loading = $loading
+                """, Map.of("loading", loading)).consume();
+        }
+    }
+
     private void createFullTextIndex(String database) {
         log.info("Creating full-text search index...");
         try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-            session.run("""
-                CREATE FULLTEXT INDEX bookSearch IF NOT EXISTS
-                FOR (b:Book)
-                ON EACH [b.title, b.titleClean, b.description, b.publisher]
-                """).consume();
+            session.run(FULLTEXT_INDEX).consume();
         }
         log.info("Full-text index created");
     }
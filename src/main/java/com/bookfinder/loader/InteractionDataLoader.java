@@ -1,88 +1,70 @@
 package com.bookfinder.loader;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import org.neo4j.driver.Driver;
-import org.neo4j.driver.Session;
-import org.neo4j.driver.SessionConfig;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.neo4j.driver.summary.ResultSummary;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class InteractionDataLoader {
 
-    private static final Logger log = LoggerFactory.getLogger(InteractionDataLoader.class);
+    static final String[] FIELDS = {"user_id", "is_read", "rating", "date_added"};
 
-    private final Driver driver;
-    private final String database;
-    private final int batchSize;
+    private final BatchWriter writer;
+    private final SampledLineLoader lines;
 
-    public InteractionDataLoader(Driver driver, String database, int batchSize) {
-        this.driver = driver;
-        this.database = database;
-        this.batchSize = batchSize;
+    public InteractionDataLoader(BatchWriter writer, int batchSize, int parseThreads) {
+        this(writer, batchSize, parseThreads, false);
     }
 
-    public void loadInteractions(String filePath, Set<String> selectedBookIds, int maxInteractions) throws IOException {
-        log.info("Loading interactions (max {})...", maxInteractions);
-
-        List<Map<String, Object>> batch = new ArrayList<>(batchSize);
-        int loaded = 0;
-        int scanned = 0;
-
-        try (JsonLineReader reader = new JsonLineReader(filePath)) {
-            Iterator<JsonNode> it = reader.stream().iterator();
-            while (it.hasNext() && loaded < maxInteractions) {
-                JsonNode node = it.next();
-                scanned++;
-
-                String bookId = node.path("book_id").asText("");
-                if (!selectedBookIds.contains(bookId)) continue;
-
-                String userId = node.path("user_id").asText("");
-                if (userId.isEmpty()) continue;
-
-                Map<String, Object> interactionMap = new HashMap<>();
-                interactionMap.put("userId", userId);
-                interactionMap.put("bookId", bookId);
-                interactionMap.put("isRead", node.path("is_read").asBoolean(false));
-                interactionMap.put("rating", node.path("rating").asInt(0));
-                interactionMap.put("dateAdded", node.path("date_added").asText(""));
-                batch.add(interactionMap);
-                loaded++;
-
-                if (batch.size() >= batchSize) {
-                    flushInteractions(batch);
-                    batch.clear();
-                    log.info("  Loaded {} interactions (scanned {})...", loaded, scanned);
-                }
+    /**
+     * With {@code sampleByBook} the budget is spread over the selected books with a
+     * {@link BookQuotaSampler} instead of taken from the head of the file.
+     */
+    public InteractionDataLoader(BatchWriter writer, int batchSize, int parseThreads, boolean sampleByBook) {
+        this.writer = writer;
+        this.lines = new SampledLineLoader(writer, batchSize, parseThreads, sampleByBook,
+                "interactions", FIELDS, InteractionDataLoader::toRow);
+    }
 
-                if (scanned % 1000000 == 0) {
-                    log.info("  Scanned {} interactions...", scanned);
-                }
-            }
-        }
+    public void loadInteractions(String filePath, Set<String> selectedBookIds, int maxInteractions) throws IOException {
+        loadInteractions(filePath, selectedBookIds, maxInteractions, null, null);
+    }
 
-        if (!batch.isEmpty()) {
-            flushInteractions(batch);
-        }
+    /**
+     * Reads only the lines at {@code positions} (from a {@link BookOffsetIndex}) instead of
+     * scanning the file, and resumes from a checkpoint {@code progress}; see
+     * {@link SampledLineLoader#load}.
+     */
+    public void loadInteractions(String filePath, Set<String> selectedBookIds, int maxInteractions,
+                                 long[] positions, LoadCheckpoint.Progress progress) throws IOException {
+        lines.load(filePath, selectedBookIds, maxInteractions, positions, progress, this::flushInteractions);
+    }
 
-        log.info("Loaded {} interactions from {} scanned lines", loaded, scanned);
+    /** The row for one interaction line, or {@code null} if it has no user. */
+    static Map<String, Object> toRow(JsonProjection.Record record) {
+        String userId = record.text("user_id");
+        if (userId.isEmpty()) return null;
+
+        Map<String, Object> interactionMap = new HashMap<>();
+        interactionMap.put("userId", userId);
+        interactionMap.put("bookId", record.text("book_id"));
+        interactionMap.put("isRead", record.bool("is_read"));
+        interactionMap.put("rating", record.intValue("rating"));
+        interactionMap.put("dateAdded", record.text("date_added"));
+        return interactionMap;
     }
 
-    private void flushInteractions(List<Map<String, Object>> batch) {
-        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-            session.run("""
-                UNWIND $batch AS i
-                MERGE (u:User {userId: i.userId})
-                WITH u, i
-                MATCH (b:Book {bookId: i.bookId})
-                MERGE (u)-[r:INTERACTED]->(b)
-                SET r.isRead = i.isRead,
-                    r.rating = i.rating,
-                    r.dateAdded = i.dateAdded
-                """, Map.of("batch", batch)).consume();
-        }
+    private CompletableFuture<ResultSummary> flushInteractions(List<Map<String, Object>> batch) {
+        return writer.submit("""
+            UNWIND $batch AS i
+            MERGE (u:User {userId: i.userId})
+            WITH u, i
+            MATCH (b:Book {bookId: i.bookId})
+            MERGE (u)-[r:INTERACTED]->(b)
+            SET r.isRead = i.isRead,
+            r.rating = i.rating,
+            r.dateAdded = i.dateAdded
+            """, batch);
     }
 }
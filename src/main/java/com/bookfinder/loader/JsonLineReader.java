@@ -6,71 +6,323 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
-import java.util.Spliterator;
-import java.util.Spliterators;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+/**
+ * Reads a JSON-lines file as a stream of parsed records.
+ *
+ * The file is cut into fixed-size byte ranges. A range owns every line that starts
+ * inside it, so ranges can be read with positional {@link FileChannel} reads and parsed
+ * independently. With {@code parallelism > 1} ranges are parsed on a dedicated
+ * fork-join pool a few ranges ahead of the consumer; in ordered mode records come out
+ * in file order, in unordered mode each range is handed over as soon as it is parsed.
+ */
 public class JsonLineReader implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(JsonLineReader.class);
-    private final BufferedReader reader;
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int READ_AHEAD = 2;
+
+    private final FileChannel channel;
+    private final long fileSize;
     private final ObjectMapper mapper;
+    private final int parallelism;
+    private final boolean ordered;
+    private final ForkJoinPool pool;
+    private long linesScanned;
+
+    /**
+     * Parses the bytes of a single line. Returning {@code null} drops the line from the stream.
+     */
+    @FunctionalInterface
+    public interface LineParser<T> {
+        T parse(byte[] buf, int offset, int length) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface PositionedLineParser<T> {
+        T parse(long position, byte[] buf, int offset, int length) throws IOException;
+    }
 
     public JsonLineReader(String filePath) throws IOException {
+        this(filePath, 1, true);
+    }
+
+    public JsonLineReader(String filePath, int parallelism, boolean ordered) throws IOException {
         this.mapper = new ObjectMapper();
-        this.reader = new BufferedReader(
-                new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8),
-                1024 * 1024
-        );
-        log.info("Opened JSON-lines file: {}", filePath);
+        this.channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.parallelism = Math.max(1, parallelism);
+        this.ordered = ordered;
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+        log.info("Opened JSON-lines file: {} ({} MB, {} parse thread(s), {})", filePath,
+                fileSize / (1024 * 1024), this.parallelism, ordered ? "ordered" : "unordered");
     }
 
     public Stream<JsonNode> stream() {
-        Iterator<JsonNode> iterator = new Iterator<>() {
-            private String nextLine = null;
-            private boolean finished = false;
+        return stream(this::parseTree);
+    }
+
+    public <T> Stream<T> stream(LineParser<T> parser) {
+        return streamWithPositions((position, buf, offset, length) -> parser.parse(buf, offset, length));
+    }
+
+    /**
+     * Like {@link #stream(LineParser)}, but also passes the file position of each line so
+     * callers can come back to it with {@link #streamAt}.
+     */
+    public <T> Stream<T> streamWithPositions(PositionedLineParser<T> parser) {
+        return streamWithPositions(0, parser);
+    }
+
+    /**
+     * Streams the lines starting at or after {@code from}, e.g. to resume a load after the
+     * last line it committed.
+     */
+    public <T> Stream<T> streamWithPositions(long from, PositionedLineParser<T> parser) {
+        Iterator<Callable<Chunk<T>>> tasks = new Iterator<>() {
+            private long nextStart = from;
 
             @Override
             public boolean hasNext() {
-                if (finished) return false;
-                if (nextLine != null) return true;
-                try {
-                    nextLine = reader.readLine();
-                    if (nextLine == null) {
-                        finished = true;
-                        return false;
-                    }
-                    return true;
-                } catch (IOException e) {
-                    finished = true;
-                    return false;
-                }
+                return nextStart < fileSize;
             }
 
             @Override
-            public JsonNode next() {
-                if (!hasNext()) throw new NoSuchElementException();
-                String line = nextLine;
-                nextLine = null;
-                try {
-                    return mapper.readTree(line);
-                } catch (Exception e) {
-                    log.warn("Skipping malformed JSON line: {}", e.getMessage());
-                    return mapper.createObjectNode();
-                }
+            public Callable<Chunk<T>> next() {
+                long start = nextStart;
+                long end = Math.min(fileSize, start + CHUNK_SIZE);
+                nextStart = end;
+                return () -> parseRange(start, end, parser);
             }
         };
+        return toStream(new ChunkIterator<>(tasks));
+    }
+
+    /**
+     * Parses only the lines starting at the given file positions, which must be sorted
+     * ascending. Nearby positions share one read, so dense position lists cost about as
+     * much I/O as a scan of the bytes they cover and sparse ones far less.
+     */
+    public <T> Stream<T> streamAt(long[] positions, LineParser<T> parser) {
+        return streamAt(positions, (PositionedLineParser<T>) (position, buf, offset, length) ->
+                parser.parse(buf, offset, length));
+    }
+
+    public <T> Stream<T> streamAt(long[] positions, PositionedLineParser<T> parser) {
+        Iterator<Callable<Chunk<T>>> tasks = new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < positions.length;
+            }
+
+            @Override
+            public Callable<Chunk<T>> next() {
+                int from = next;
+                while (next < positions.length && positions[next] - positions[from] < CHUNK_SIZE) next++;
+                int to = next;
+                return () -> parsePositions(positions, from, to, parser);
+            }
+        };
+        return toStream(new ChunkIterator<>(tasks));
+    }
+
+    /**
+     * Number of lines in the ranges handed to the consumer so far, including lines the
+     * parser dropped.
+     */
+    public long linesScanned() {
+        return linesScanned;
+    }
+
+    private <T> Stream<T> toStream(Iterator<T> iterator) {
+        int characteristics = Spliterator.NONNULL | (ordered ? Spliterator.ORDERED : 0);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, characteristics), false);
+    }
+
+    private JsonNode parseTree(byte[] buf, int offset, int length) {
+        try {
+            return mapper.readTree(buf, offset, length);
+        } catch (Exception e) {
+            log.warn("Skipping malformed JSON line: {}", e.getMessage());
+            return mapper.createObjectNode();
+        }
+    }
+
+    private record Chunk<T>(List<T> records, int lines) {}
+
+    private class ChunkIterator<T> implements Iterator<T> {
+        private final Iterator<Callable<Chunk<T>>> tasks;
+        private final ArrayDeque<Future<Chunk<T>>> pending = new ArrayDeque<>();
+        private final CompletionService<Chunk<T>> completed;
+        private int inFlight = 0;
+        private Iterator<T> current = Collections.emptyIterator();
+
+        ChunkIterator(Iterator<Callable<Chunk<T>>> tasks) {
+            this.tasks = tasks;
+            this.completed = pool != null && !ordered ? new ExecutorCompletionService<>(pool) : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                Chunk<T> chunk = nextChunk();
+                if (chunk == null) return false;
+                linesScanned += chunk.lines();
+                current = chunk.records().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+
+        private Chunk<T> nextChunk() {
+            try {
+                if (pool == null) {
+                    return tasks.hasNext() ? tasks.next().call() : null;
+                }
+
+                while (inFlight < parallelism * READ_AHEAD && tasks.hasNext()) {
+                    Callable<Chunk<T>> task = tasks.next();
+                    if (ordered) {
+                        pending.add(pool.submit(task));
+                    } else {
+                        completed.submit(task);
+                    }
+                    inFlight++;
+                }
+                if (inFlight == 0) return null;
+
+                Future<Chunk<T>> future = ordered ? pending.poll() : completed.take();
+                inFlight--;
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while parsing JSON-lines file", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) throw new UncheckedIOException(io);
+                throw new IllegalStateException("Failed to parse JSON-lines chunk", cause);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to parse JSON-lines chunk", e);
+            }
+        }
+    }
+
+    /**
+     * Parses every line that starts in {@code [start, end)}. The last line may run past
+     * {@code end}; the partial line at {@code start} belongs to the previous range.
+     */
+    private <T> Chunk<T> parseRange(long start, long end, PositionedLineParser<T> parser) throws IOException {
+        long base = start == 0 ? 0 : start - 1;
+        Window window = new Window(base, (int) (end - base));
+
+        int pos = 0;
+        if (start > 0) {
+            pos = window.lineEnd(0) + 1;
+            if (base + pos >= end) return new Chunk<>(List.of(), 0);
+        }
+
+        List<T> records = new ArrayList<>();
+        int lines = 0;
+        while (base + pos < end && base + pos < fileSize) {
+            int lineEnd = window.lineEnd(pos);
+            if (window.parse(parser, pos, lineEnd, records)) lines++;
+            pos = lineEnd + 1;
+        }
+        return new Chunk<>(records, lines);
+    }
+
+    private <T> Chunk<T> parsePositions(long[] positions, int from, int to,
+                                        PositionedLineParser<T> parser) throws IOException {
+        long base = positions[from];
+        Window window = new Window(base, (int) (positions[to - 1] - base));
+
+        List<T> records = new ArrayList<>(to - from);
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            int pos = (int) (positions[i] - base);
+            if (window.parse(parser, pos, window.lineEnd(pos), records)) lines++;
+        }
+        return new Chunk<>(records, lines);
+    }
+
+    /**
+     * A buffer over part of the file that grows when a line runs past its end.
+     */
+    private class Window {
+        private final long base;
+        private byte[] buf;
+        private int len;
+
+        Window(long base, int size) throws IOException {
+            this.base = base;
+            this.buf = new byte[size + 64 * 1024];
+            this.len = read(base, buf, 0);
+        }
+
+        /** Index of the newline ending the line at {@code pos}, or the end of the file. */
+        int lineEnd(int pos) throws IOException {
+            int nl = indexOf(buf, pos, len);
+            while (nl < 0 && base + len < fileSize) {
+                if (len == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+                int scanFrom = len;
+                len += read(base + len, buf, len);
+                nl = indexOf(buf, scanFrom, len);
+            }
+            return nl < 0 ? len : nl;
+        }
+
+        <T> boolean parse(PositionedLineParser<T> parser, int pos, int lineEnd, List<T> out) {
+            int lineLen = lineEnd - pos;
+            if (lineLen > 0 && buf[lineEnd - 1] == '\r') lineLen--;
+            if (lineLen <= 0) return false;
+            try {
+                T record = parser.parse(base + pos, buf, pos, lineLen);
+                if (record != null) out.add(record);
+            } catch (Exception e) {
+                log.warn("Skipping malformed JSON line: {}", e.getMessage());
+            }
+            return true;
+        }
+    }
+
+    private int read(long position, byte[] buf, int offset) throws IOException {
+        ByteBuffer target = ByteBuffer.wrap(buf, offset, buf.length - offset);
+        int total = 0;
+        while (target.hasRemaining() && position + total < fileSize) {
+            int n = channel.read(target, position + total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
 
-        Spliterator<JsonNode> spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED);
-        return StreamSupport.stream(spliterator, false);
+    private static int indexOf(byte[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == '\n') return i;
+        }
+        return -1;
     }
 
     @Override
     public void close() throws IOException {
-        reader.close();
+        if (pool != null) pool.shutdownNow();
+        channel.close();
     }
 }
@@ -0,0 +1,186 @@
+package com.bookfinder.loader;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Extracts a fixed set of top-level fields from a JSON line with Jackson's streaming
+ * parser. Undeclared fields are skipped without being decoded, and a filter on one field
+ * rejects the line as soon as that field is read.
+ *
+ * Container values (arrays, objects) are only remembered as byte spans while the line is
+ * tokenized and turned into {@link JsonNode} trees once the line has passed the filter,
+ * so rejected lines never build trees even when the filter field comes last.
+ */
+public final class JsonProjection implements JsonLineReader.LineParser<JsonProjection.Record> {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper(FACTORY);
+
+    private final Map<String, Integer> slots;
+    private final String filterField;
+    private final Predicate<String> filter;
+    private final BookIdSet idFilter;
+
+    private JsonProjection(Map<String, Integer> slots, String filterField, Predicate<String> filter,
+                           BookIdSet idFilter) {
+        this.slots = slots;
+        this.filterField = filterField;
+        this.filter = filter;
+        this.idFilter = idFilter;
+    }
+
+    public static JsonProjection fields(String... fields) {
+        Map<String, Integer> slots = new HashMap<>();
+        for (String field : fields) {
+            slots.putIfAbsent(field, slots.size());
+        }
+        return new JsonProjection(slots, null, null, null);
+    }
+
+    /**
+     * Drops lines whose {@code field} value does not satisfy {@code filter}, or that do not
+     * have the field at all. The field is added to the projection if it is not declared.
+     */
+    public JsonProjection filterOn(String field, Predicate<String> filter) {
+        Map<String, Integer> withField = new HashMap<>(slots);
+        withField.putIfAbsent(field, withField.size());
+        return new JsonProjection(withField, field, filter, null);
+    }
+
+    /**
+     * Like {@link #filterOn}, but tests the ID against {@code ids} straight from the
+     * parser's character buffer, so rejected lines allocate no String for it.
+     */
+    public JsonProjection filterOnIds(String field, Set<String> ids) {
+        BookIdSet idSet = BookIdSet.copyOf(ids);
+        Map<String, Integer> withField = new HashMap<>(slots);
+        withField.putIfAbsent(field, withField.size());
+        return new JsonProjection(withField, field, idSet::contains, idSet);
+    }
+
+    @Override
+    public Record parse(byte[] buf, int offset, int length) throws IOException {
+        Object[] values = new Object[slots.size()];
+        int[] spans = null;
+        boolean accepted = filter == null;
+
+        try (JsonParser parser = FACTORY.createParser(buf, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                Integer slot = slots.get(name);
+
+                if (slot == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                if (idFilter != null && name.equals(filterField)) {
+                    boolean match = switch (token) {
+                        case VALUE_STRING -> idFilter.contains(
+                                parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                        case VALUE_NUMBER_INT -> idFilter.contains(parser.getLongValue());
+                        default -> false;
+                    };
+                    if (!match) return null;
+                    values[slot] = parser.getText();
+                    accepted = true;
+                    continue;
+                }
+
+                if (token.isStructStart()) {
+                    int start = (int) parser.currentTokenLocation().getByteOffset();
+                    parser.skipChildren();
+                    int end = (int) parser.currentLocation().getByteOffset();
+                    if (spans == null) spans = new int[slots.size() * 2];
+                    spans[slot * 2] = offset + start;
+                    spans[slot * 2 + 1] = end - start;
+                    values[slot] = SPAN;
+                } else if (token != JsonToken.VALUE_NULL) {
+                    values[slot] = parser.getText();
+                }
+
+                if (name.equals(filterField)) {
+                    if (!(values[slot] instanceof String value) || !filter.test(value)) return null;
+                    accepted = true;
+                }
+            }
+        }
+
+        if (!accepted) return null;
+
+        if (spans != null) {
+            for (int slot = 0; slot < values.length; slot++) {
+                if (values[slot] == SPAN) {
+                    values[slot] = MAPPER.readTree(buf, spans[slot * 2], spans[slot * 2 + 1]);
+                }
+            }
+        }
+        return new Record(this, values);
+    }
+
+    private static final Object SPAN = new Object();
+
+    public static final class Record {
+        private final JsonProjection projection;
+        private final Object[] values;
+
+        private Record(JsonProjection projection, Object[] values) {
+            this.projection = projection;
+            this.values = values;
+        }
+
+        public String text(String field) {
+            Object value = value(field);
+            return value instanceof String s ? s : "";
+        }
+
+        public int intValue(String field) {
+            String text = text(field);
+            if (text.isEmpty()) return 0;
+            try {
+                return Integer.parseInt(text.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        public double doubleValue(String field) {
+            String text = text(field);
+            if (text.isEmpty()) return 0.0;
+            try {
+                return Double.parseDouble(text.trim());
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+
+        public boolean bool(String field) {
+            return Boolean.parseBoolean(text(field));
+        }
+
+        public JsonNode node(String field) {
+            Object value = value(field);
+            return value instanceof JsonNode n ? n : MissingNode.getInstance();
+        }
+
+        private Object value(String field) {
+            Integer slot = projection.slots.get(field);
+            if (slot == null) throw new IllegalArgumentException("Field not in projection: " + field);
+            return values[slot];
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.bookfinder.loader;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Progress of a load run, kept in a small JSON file so a crashed run can pick up where it
+ * stopped instead of clearing the database again.
+ *
+ * Each genre records the phase it is in and, for the interactions and reviews files, the
+ * file position just past the last line of the longest run of committed batches. Batches
+ * commit out of order when several are in flight, so a position only advances once every
+ * batch before it has committed too. Everything after that position is read and written
+ * again on resume, which is safe because every flush statement MERGEs.
+ */
+public class LoadCheckpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadCheckpoint.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public enum Phase { BOOKS, INTERACTIONS, REVIEWS, DONE }
+
+    private final Path file;
+    private final State state;
+    private final boolean resumed;
+
+    /** Serialized form of the checkpoint file. */
+    public static class State {
+        public String config;
+        public boolean authorsDone;
+        public Map<String, GenreState> genres = new LinkedHashMap<>();
+    }
+
+    public static class GenreState {
+        public Phase phase = Phase.BOOKS;
+        public List<String> bookIds = new ArrayList<>();
+        public List<String> newBookIds = new ArrayList<>();
+        public List<String> removedBookIds = new ArrayList<>();
+        public int maxInteractions;
+        public int maxReviews;
+        public Map<String, FileProgress> files = new HashMap<>();
+    }
+
+    public static class FileProgress {
+        public long resumeOffset;
+        public long batches;
+        public int loaded;
+    }
+
+    private LoadCheckpoint(Path file, State state, boolean resumed) {
+        this.file = file;
+        this.state = state;
+        this.resumed = resumed;
+    }
+
+    /**
+     * Opens the checkpoint left by an unfinished run with the same {@code config}, or starts
+     * a new one. A checkpoint written for a different configuration is discarded.
+     */
+    public static LoadCheckpoint open(Path file, String config) {
+        if (Files.exists(file)) {
+            try {
+                State state = MAPPER.readValue(file.toFile(), State.class);
+                if (config.equals(state.config)) {
+                    log.info("Resuming load from checkpoint {}", file);
+                    return new LoadCheckpoint(file, state, true);
+                }
+                log.info("Checkpoint {} was written for a different configuration, starting over", file);
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable checkpoint {}: {}", file, e.getMessage());
+            }
+        }
+        State state = new State();
+        state.config = config;
+        return new LoadCheckpoint(file, state, false);
+    }
+
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    public synchronized GenreState genre(String genreKey) {
+        return state.genres.computeIfAbsent(genreKey, k -> new GenreState());
+    }
+
+    public synchronized boolean isAuthorsDone() {
+        return state.authorsDone;
+    }
+
+    public synchronized void authorsDone() {
+        state.authorsDone = true;
+        save();
+    }
+
+    /** Records the outcome of the books phase, which later phases of a resumed run reuse. */
+    public synchronized void booksLoaded(GenreState genre, Collection<String> bookIds, Collection<String> newBookIds,
+                                         Collection<String> removedBookIds, int maxInteractions, int maxReviews) {
+        genre.bookIds = new ArrayList<>(bookIds);
+        genre.newBookIds = new ArrayList<>(newBookIds);
+        genre.removedBookIds = new ArrayList<>(removedBookIds);
+        genre.maxInteractions = maxInteractions;
+        genre.maxReviews = maxReviews;
+        advance(genre, Phase.INTERACTIONS);
+    }
+
+    public synchronized void advance(GenreState genre, Phase phase) {
+        genre.phase = phase;
+        save();
+    }
+
+    /** Tracks committed batches of one file of {@code genre}; see the class comment. */
+    public synchronized Progress progress(GenreState genre, String name) {
+        return new Progress(genre.files.computeIfAbsent(name, k -> new FileProgress()));
+    }
+
+    public synchronized void save() {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            MAPPER.writeValue(tmp.toFile(), state);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint " + file, e);
+        }
+    }
+
+    /** Removes the checkpoint once the run has finished. */
+    public void complete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    public class Progress {
+        private final FileProgress saved;
+        private final TreeMap<Long, long[]> pending = new TreeMap<>();
+        private long nextSequence = 0;
+        private long committedSequence = 0;
+
+        private Progress(FileProgress saved) {
+            this.saved = saved;
+        }
+
+        /** Position to resume reading from; lines starting before it are already loaded. */
+        public long resumeOffset() {
+            return saved.resumeOffset;
+        }
+
+        /** Rows loaded by earlier attempts, which count against the genre's budget. */
+        public int loaded() {
+            return saved.loaded;
+        }
+
+        /**
+         * Registers a batch whose last line starts at {@code lastPosition}, with
+         * {@code loaded} rows loaded in total once it commits. Returns the sequence to pass
+         * to {@link #committed}.
+         */
+        public long submitted(long lastPosition, int loaded) {
+            synchronized (LoadCheckpoint.this) {
+                long sequence = nextSequence++;
+                pending.put(sequence, new long[]{lastPosition + 1, loaded, 0});
+                return sequence;
+            }
+        }
+
+        public void committed(long sequence) {
+            synchronized (LoadCheckpoint.this) {
+                long[] batch = pending.get(sequence);
+                if (batch == null) return;
+                batch[2] = 1;
+
+                boolean advanced = false;
+                while (!pending.isEmpty() && pending.firstKey() == committedSequence
+                        && pending.firstEntry().getValue()[2] == 1) {
+                    long[] done = pending.pollFirstEntry().getValue();
+                    saved.resumeOffset = done[0];
+                    saved.loaded = (int) done[1];
+                    saved.batches++;
+                    committedSequence++;
+                    advanced = true;
+                }
+                if (advanced) save();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.bookfinder.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the last load put into the graph for one genre: the selected book IDs and a
+ * fingerprint of every dataset file it read. Incremental loads diff the new selection
+ * against {@link #bookIds()} and only fall back to reloading the genre when one of the
+ * files has changed.
+ */
+public record LoadManifest(String genreKey, int subsetSize, List<String> bookIds,
+                           Map<String, FileFingerprint> files) {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadManifest.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int SAMPLE_BYTES = 1024 * 1024;
+
+    /**
+     * Size, modification time and a SHA-256 over the first and last megabyte of a file.
+     * Hashing the whole file would cost as much as the scan the manifest exists to avoid,
+     * and a rewritten Goodreads dump changes its size or its edges.
+     */
+    public record FileFingerprint(long size, long modified, String sampleSha256) {
+
+        public static FileFingerprint of(String filePath) throws IOException {
+            Path path = Path.of(filePath);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                MessageDigest digest = sha256();
+                digest.update(read(channel, 0, (int) Math.min(SAMPLE_BYTES, size)));
+                if (size > SAMPLE_BYTES) {
+                    long tail = Math.max(SAMPLE_BYTES, size - SAMPLE_BYTES);
+                    digest.update(read(channel, tail, (int) (size - tail)));
+                }
+                return new FileFingerprint(size, Files.getLastModifiedTime(path).toMillis(),
+                        HexFormat.of().formatHex(digest.digest()));
+            }
+        }
+
+        private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(length);
+            while (buf.hasRemaining() && channel.read(buf, position + buf.position()) >= 0) {
+                // keep reading until the sample is complete
+            }
+            return buf.flip();
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+
+    /** The manifest stored for {@code genreKey}, or {@code null} if there is none. */
+    public static LoadManifest read(Path stateDir, String genreKey) {
+        Path file = stateDir.resolve(genreKey + ".manifest.json");
+        if (!Files.exists(file)) return null;
+        try {
+            return MAPPER.readValue(file.toFile(), LoadManifest.class);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable load manifest {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    public void write(Path stateDir) throws IOException {
+        Files.createDirectories(stateDir);
+        Path file = stateDir.resolve(genreKey + ".manifest.json");
+        Path tmp = stateDir.resolve(genreKey + ".manifest.json.tmp");
+        MAPPER.writeValue(tmp.toFile(), this);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
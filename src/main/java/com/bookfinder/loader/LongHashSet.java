@@ -0,0 +1,91 @@
+package com.bookfinder.loader;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing set of primitive longs: 8 bytes per slot instead of a boxed
+ * {@code Long} plus a {@code HashMap} entry, which matters when deduplicating millions
+ * of user IDs.
+ */
+public final class LongHashSet {
+
+    private static final long EMPTY = 0;
+
+    private long[] slots;
+    private int size;
+    private boolean containsEmpty;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        this.slots = new long[capacity];
+    }
+
+    /** Adds {@code value}; returns {@code false} if it was already present. */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) return false;
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == value) return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        if (++size > slots.length * 3 / 4) grow();
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) return containsEmpty;
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == value) return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (containsEmpty) action.accept(EMPTY);
+        for (long value : slots) {
+            if (value != EMPTY) action.accept(value);
+        }
+    }
+
+    public long[] toArray() {
+        long[] values = new long[size];
+        int[] n = {0};
+        forEach(v -> values[n[0]++] = v);
+        return values;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        int mask = slots.length - 1;
+        for (long value : old) {
+            if (value == EMPTY) continue;
+            int i = mix(value) & mask;
+            while (slots[i] != EMPTY) i = (i + 1) & mask;
+            slots[i] = value;
+        }
+    }
+
+    private static int mix(long value) {
+        long h = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        return (int) (h ^ (h >>> 33));
+    }
+}
@@ -1,92 +1,80 @@
 package com.bookfinder.loader;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import org.neo4j.driver.Driver;
-import org.neo4j.driver.Session;
-import org.neo4j.driver.SessionConfig;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.neo4j.driver.summary.ResultSummary;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class ReviewDataLoader {
 
-    private static final Logger log = LoggerFactory.getLogger(ReviewDataLoader.class);
+    static final String[] FIELDS = {
+            "user_id", "review_id", "rating", "review_text", "n_votes", "n_comments", "date_added"
+    };
 
-    private final Driver driver;
-    private final String database;
-    private final int batchSize;
+    private final BatchWriter writer;
+    private final SampledLineLoader lines;
 
-    public ReviewDataLoader(Driver driver, String database, int batchSize) {
-        this.driver = driver;
-        this.database = database;
-        this.batchSize = batchSize;
+    public ReviewDataLoader(BatchWriter writer, int batchSize, int parseThreads) {
+        this(writer, batchSize, parseThreads, false);
     }
 
-    public void loadReviews(String filePath, Set<String> selectedBookIds, int maxReviews) throws IOException {
-        log.info("Loading reviews (max {})...", maxReviews);
-
-        List<Map<String, Object>> batch = new ArrayList<>(batchSize);
-        int loaded = 0;
-        int scanned = 0;
-
-        try (JsonLineReader reader = new JsonLineReader(filePath)) {
-            Iterator<JsonNode> it = reader.stream().iterator();
-            while (it.hasNext() && loaded < maxReviews) {
-                JsonNode node = it.next();
-                scanned++;
-
-                String bookId = node.path("book_id").asText("");
-                if (!selectedBookIds.contains(bookId)) continue;
-
-                String userId = node.path("user_id").asText("");
-                String reviewText = node.path("review_text").asText("");
-                if (userId.isEmpty() || reviewText.isEmpty()) continue;
-
-                Map<String, Object> reviewMap = new HashMap<>();
-                reviewMap.put("userId", userId);
-                reviewMap.put("bookId", bookId);
-                reviewMap.put("reviewId", node.path("review_id").asText(""));
-                reviewMap.put("rating", node.path("rating").asInt(0));
-                reviewMap.put("reviewText", truncate(reviewText, 500));
-                reviewMap.put("nVotes", node.path("n_votes").asInt(0));
-                reviewMap.put("nComments", node.path("n_comments").asInt(0));
-                reviewMap.put("dateAdded", node.path("date_added").asText(""));
-                batch.add(reviewMap);
-                loaded++;
+    /**
+     * With {@code sampleByBook} the budget is spread over the selected books with a
+     * {@link BookQuotaSampler} instead of taken from the head of the file.
+     */
+    public ReviewDataLoader(BatchWriter writer, int batchSize, int parseThreads, boolean sampleByBook) {
+        this.writer = writer;
+        this.lines = new SampledLineLoader(writer, batchSize, parseThreads, sampleByBook,
+                "reviews", FIELDS, ReviewDataLoader::toRow);
+    }
 
-                if (batch.size() >= batchSize) {
-                    flushReviews(batch);
-                    batch.clear();
-                    log.info("  Loaded {} reviews (scanned {})...", loaded, scanned);
-                }
-            }
-        }
+    public void loadReviews(String filePath, Set<String> selectedBookIds, int maxReviews) throws IOException {
+        loadReviews(filePath, selectedBookIds, maxReviews, null, null);
+    }
 
-        if (!batch.isEmpty()) {
-            flushReviews(batch);
-        }
+    /**
+     * Reads only the lines at {@code positions} (from a {@link BookOffsetIndex}) instead of
+     * scanning the file, and resumes from a checkpoint {@code progress}; see
+     * {@link SampledLineLoader#load}.
+     */
+    public void loadReviews(String filePath, Set<String> selectedBookIds, int maxReviews,
+                            long[] positions, LoadCheckpoint.Progress progress) throws IOException {
+        lines.load(filePath, selectedBookIds, maxReviews, positions, progress, this::flushReviews);
+    }
 
-        log.info("Loaded {} reviews from {} scanned lines", loaded, scanned);
+    /** The row for one review line, or {@code null} if it has no user or no text. */
+    static Map<String, Object> toRow(JsonProjection.Record record) {
+        String userId = record.text("user_id");
+        String reviewText = record.text("review_text");
+        if (userId.isEmpty() || reviewText.isEmpty()) return null;
+
+        Map<String, Object> reviewMap = new HashMap<>();
+        reviewMap.put("userId", userId);
+        reviewMap.put("bookId", record.text("book_id"));
+        reviewMap.put("reviewId", record.text("review_id"));
+        reviewMap.put("rating", record.intValue("rating"));
+        reviewMap.put("reviewText", truncate(reviewText, 500));
+        reviewMap.put("nVotes", record.intValue("n_votes"));
+        reviewMap.put("nComments", record.intValue("n_comments"));
+        reviewMap.put("dateAdded", record.text("date_added"));
+        return reviewMap;
     }
 
-    private void flushReviews(List<Map<String, Object>> batch) {
-        try (Session session = driver.session(SessionConfig.forDatabase(database))) {
-            session.run("""
-                UNWIND $batch AS r
-                MERGE (u:User {userId: r.userId})
-                WITH u, r
-                MATCH (b:Book {bookId: r.bookId})
-                MERGE (u)-[rev:REVIEWED]->(b)
-                SET rev.reviewId = r.reviewId,
-                    rev.rating = r.rating,
-                    rev.reviewText = r.reviewText,
-                    rev.nVotes = r.nVotes,
-                    rev.nComments = r.nComments,
-                    rev.dateAdded = r.dateAdded
-                """, Map.of("batch", batch)).consume();
-        }
+    private CompletableFuture<ResultSummary> flushReviews(List<Map<String, Object>> batch) {
+        return writer.submit("""
+            UNWIND $batch AS r
+            MERGE (u:User {userId: r.userId})
+            WITH u, r
+            MATCH (b:Book {bookId: r.bookId})
+            MERGE (u)-[rev:REVIEWED]->(b)
+            SET rev.reviewId = r.reviewId,
+                rev.rating = r.rating,
+                rev.reviewText = r.reviewText,
+                rev.nVotes = r.nVotes,
+                rev.nComments = r.nComments,
+                rev.dateAdded = r.dateAdded
+            """, batch);
     }
 
     private static String truncate(String s, int maxLen) {
@@ -0,0 +1,140 @@
+package com.bookfinder.loader;
+
+import org.neo4j.driver.summary.ResultSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * The read loop shared by {@link InteractionDataLoader} and {@link ReviewDataLoader}: reads
+ * the lines of the selected books (by scan or at offset-index positions), samples them per
+ * book or takes them from the head of the file, and submits them in batches that advance a
+ * load checkpoint as they commit.
+ */
+final class SampledLineLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(SampledLineLoader.class);
+
+    private final BatchWriter writer;
+    private final int batchSize;
+    private final int parseThreads;
+    private final boolean sampleByBook;
+    private final String name;
+    private final String[] fields;
+    private final Function<JsonProjection.Record, Map<String, Object>> toRow;
+
+    /**
+     * @param name   what the lines are, for log messages
+     * @param fields the fields {@code toRow} reads besides {@code book_id}
+     * @param toRow  the row for a line, or {@code null} to skip it
+     */
+    SampledLineLoader(BatchWriter writer, int batchSize, int parseThreads, boolean sampleByBook,
+                      String name, String[] fields, Function<JsonProjection.Record, Map<String, Object>> toRow) {
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.parseThreads = parseThreads;
+        this.sampleByBook = sampleByBook;
+        this.name = name;
+        this.fields = fields;
+        this.toRow = toRow;
+    }
+
+    /**
+     * Loads up to {@code max} rows of {@code filePath}, submitting each batch with
+     * {@code submit} and waiting for all of them to commit.
+     *
+     * Reads only the lines at {@code positions} (from a {@link BookOffsetIndex}) instead of
+     * scanning the file. Positions are in file order, so the same rows are kept as a scan.
+     * With a checkpoint {@code progress}, reading resumes after the last committed batch and
+     * each batch advances the checkpoint once it and all earlier batches have committed.
+     * A per-book sample is drawn from the whole file on every attempt; it is the same each
+     * time, so a resumed load skips the sampled rows up to the checkpoint.
+     */
+    void load(String filePath, Set<String> selectedBookIds, int max, long[] positions,
+              LoadCheckpoint.Progress progress,
+              Function<List<Map<String, Object>>, CompletableFuture<ResultSummary>> submit) throws IOException {
+        log.info("Loading {} (max {})...", name, max);
+
+        List<Map<String, Object>> batch = new ArrayList<>(batchSize);
+        int loaded = progress != null ? progress.loaded() : 0;
+        long from = progress != null ? progress.resumeOffset() : 0;
+        long lastPosition = from;
+        long scanned = 0;
+        if (from > 0) {
+            log.info("  Resuming at byte {} with {} already loaded", from, loaded);
+        }
+
+        JsonProjection projection = JsonProjection.fields(fields)
+                .filterOnIds("book_id", selectedBookIds);
+
+        try (JsonLineReader reader = new JsonLineReader(filePath, parseThreads, true)) {
+            JsonLineReader.PositionedLineParser<Row> parser = (position, buf, offset, length) -> {
+                JsonProjection.Record record = projection.parse(buf, offset, length);
+                Map<String, Object> row = record == null ? null : toRow.apply(record);
+                return row == null ? null : new Row(position, row);
+            };
+            long readFrom = sampleByBook ? 0 : from;
+            Iterator<Row> it = positions != null
+                    ? reader.streamAt(remaining(positions, readFrom), parser).iterator()
+                    : reader.streamWithPositions(readFrom, parser).iterator();
+            if (sampleByBook) {
+                List<Row> sampled = BookQuotaSampler.sample(it, row -> (String) row.row().get("bookId"),
+                        Row::position, max, selectedBookIds.size());
+                it = sampled.iterator();
+                log.info("  Sampled {} of {} scanned lines across {} books", sampled.size(),
+                        reader.linesScanned(), selectedBookIds.size());
+            }
+            long nextProgress = 1000000;
+            while (it.hasNext() && loaded < max) {
+                Row row = it.next();
+                if (sampleByBook && from > 0 && row.position() <= from) continue;
+                lastPosition = row.position();
+                scanned = reader.linesScanned();
+                batch.add(row.row());
+                loaded++;
+
+                if (batch.size() >= batchSize) {
+                    flush(batch, progress, lastPosition, loaded, submit);
+                    batch = new ArrayList<>(batchSize);
+                    log.info("  Loaded {} {} (scanned {})...", loaded, name, scanned);
+                }
+
+                if (scanned >= nextProgress) {
+                    log.info("  Scanned {} {}...", scanned, name);
+                    nextProgress += 1000000;
+                }
+            }
+            scanned = reader.linesScanned();
+        }
+
+        if (!batch.isEmpty()) {
+            flush(batch, progress, lastPosition, loaded, submit);
+        }
+        writer.flush();
+
+        log.info("Loaded {} {} from {} scanned lines", loaded, name, scanned);
+    }
+
+    private void flush(List<Map<String, Object>> batch, LoadCheckpoint.Progress progress, long lastPosition,
+                       int loaded, Function<List<Map<String, Object>>, CompletableFuture<ResultSummary>> submit) {
+        BatchWriter.lockOrder(batch, "userId");
+        long sequence = progress != null ? progress.submitted(lastPosition, loaded) : -1;
+        CompletableFuture<ResultSummary> result = submit.apply(batch);
+        if (progress != null) {
+            result.thenRun(() -> progress.committed(sequence));
+        }
+    }
+
+    private record Row(long position, Map<String, Object> row) {}
+
+    /** The positions at or after {@code from}. */
+    static long[] remaining(long[] positions, long from) {
+        int i = Arrays.binarySearch(positions, from);
+        if (i < 0) i = -i - 1;
+        return i == 0 ? positions : Arrays.copyOfRange(positions, i, positions.length);
+    }
+}
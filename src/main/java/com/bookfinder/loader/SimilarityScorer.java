@@ -0,0 +1,137 @@
+package com.bookfinder.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputes what the graph recommendation strategy used to work out per request: for
+ * each book, the books reachable over one or two {@code SIMILAR_TO} hops, weighted by the
+ * number of such paths and cut to the top {@code topN}.
+ *
+ * Books and edges are collected into a compressed adjacency list (an offsets array and a
+ * targets array indexed by book), and sources are scored in parallel, each thread
+ * counting paths in its own dense array. Ordering matches the old query: paths, then
+ * ratings count, then book ID so the result is stable.
+ */
+final class SimilarityScorer {
+
+    /** Receives the scored pairs, one source book at a time, best target first. */
+    @FunctionalInterface
+    interface Sink {
+        void accept(String bookId, String similarBookId, int paths);
+    }
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private int[] ratings = new int[1024];
+    private int[] edgeFrom = new int[1024];
+    private int[] edgeTo = new int[1024];
+    private int edges;
+
+    void book(String bookId, int ratingsCount) {
+        int i = indexOf(bookId);
+        ratings[i] = ratingsCount;
+    }
+
+    void edge(String bookId, String similarBookId) {
+        if (edges == edgeFrom.length) {
+            edgeFrom = Arrays.copyOf(edgeFrom, edges * 2);
+            edgeTo = Arrays.copyOf(edgeTo, edges * 2);
+        }
+        int from = indexOf(bookId);
+        int to = indexOf(similarBookId);
+        edgeFrom[edges] = from;
+        edgeTo[edges++] = to;
+    }
+
+    int books() {
+        return ids.size();
+    }
+
+    int edges() {
+        return edges;
+    }
+
+    /**
+     * Scores every book on {@code threads} threads and hands the results to {@code sink} on
+     * the calling thread, in book order.
+     */
+    void score(int topN, int threads, Sink sink) {
+        int n = ids.size();
+        int[] offsets = new int[n + 1];
+        for (int e = 0; e < edges; e++) offsets[edgeFrom[e] + 1]++;
+        for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+        int[] targets = new int[edges];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < edges; e++) targets[fill[edgeFrom[e]]++] = edgeTo[e];
+
+        int[][] results = new int[n][];
+        ThreadLocal<int[]> counts = ThreadLocal.withInitial(() -> new int[n]);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(source ->
+                    results[source] = scoreSource(source, offsets, targets, counts.get(), topN))).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int source = 0; source < n; source++) {
+            int[] result = results[source];
+            for (int i = 0; i < result.length; i += 2) {
+                sink.accept(ids.get(source), ids.get(result[i]), result[i + 1]);
+            }
+        }
+    }
+
+    /** The top targets of {@code source} as (target, paths) pairs, leaving {@code counts} zeroed. */
+    private int[] scoreSource(int source, int[] offsets, int[] targets, int[] counts, int topN) {
+        int[] touched = new int[16];
+        int size = 0;
+        for (int i = offsets[source]; i < offsets[source + 1]; i++) {
+            int hop = targets[i];
+            if (hop != source && counts[hop]++ == 0) {
+                if (size == touched.length) touched = Arrays.copyOf(touched, size * 2);
+                touched[size++] = hop;
+            }
+            for (int j = offsets[hop]; j < offsets[hop + 1]; j++) {
+                int second = targets[j];
+                if (second != source && counts[second]++ == 0) {
+                    if (size == touched.length) touched = Arrays.copyOf(touched, size * 2);
+                    touched[size++] = second;
+                }
+            }
+        }
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = touched[i];
+        Arrays.sort(order, (a, b) -> {
+            if (counts[a] != counts[b]) return Integer.compare(counts[b], counts[a]);
+            if (ratings[a] != ratings[b]) return Integer.compare(ratings[b], ratings[a]);
+            return ids.get(a).compareTo(ids.get(b));
+        });
+
+        int kept = Math.min(size, topN);
+        int[] result = new int[kept * 2];
+        for (int i = 0; i < kept; i++) {
+            result[i * 2] = order[i];
+            result[i * 2 + 1] = counts[order[i]];
+        }
+        for (int i = 0; i < size; i++) counts[touched[i]] = 0;
+        return result;
+    }
+
+    private int indexOf(String bookId) {
+        Integer i = index.get(bookId);
+        if (i != null) return i;
+        int next = ids.size();
+        index.put(bookId, next);
+        ids.add(bookId);
+        if (next == ratings.length) ratings = Arrays.copyOf(ratings, next * 2);
+        return next;
+    }
+}
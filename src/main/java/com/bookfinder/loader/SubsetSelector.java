@@ -1,63 +1,172 @@
 package com.bookfinder.loader;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SubsetSelector {
 
     private static final Logger log = LoggerFactory.getLogger(SubsetSelector.class);
 
-    public static Set<String> selectTopBookIds(String booksFilePath, int subsetSize) throws IOException {
-        log.info("Scanning books file to select top {} by ratings_count...", subsetSize);
+    /**
+     * Prior for {@link Ranking#WEIGHTED_RATING}: each book's average is pulled toward
+     * {@code PRIOR_MEAN} as if it had {@code PRIOR_COUNT} extra ratings, so a 5.0 from three
+     * readers does not outrank a 4.3 from fifty thousand.
+     */
+    private static final double PRIOR_MEAN = 3.9;
+    private static final int PRIOR_COUNT = 100;
 
-        PriorityQueue<BookEntry> minHeap = new PriorityQueue<>(
-                Comparator.comparingInt(e -> e.ratingsCount)
-        );
+    /**
+     * Heap ID of a book whose ID is not a plain number: this bit plus its line's file
+     * position. Numeric IDs stay below it, so they win ties, and the position keeps ties
+     * between other IDs independent of thread timing.
+     */
+    private static final long OTHER_ID = 1L << 62;
 
-        int total = 0;
-        try (JsonLineReader reader = new JsonLineReader(booksFilePath)) {
-            Iterator<JsonNode> it = reader.stream().iterator();
-            while (it.hasNext()) {
-                JsonNode node = it.next();
-                String bookId = node.path("book_id").asText("");
-                int ratingsCount = parseIntSafe(node.path("ratings_count").asText("0"));
-
-                if (!bookId.isEmpty() && ratingsCount > 0) {
-                    minHeap.offer(new BookEntry(bookId, ratingsCount));
-                    if (minHeap.size() > subsetSize) {
-                        minHeap.poll();
-                    }
-                }
-                total++;
-                if (total % 10000 == 0) {
-                    log.info("  Scanned {} books...", total);
+    public enum Ranking {
+        RATINGS_COUNT, WEIGHTED_RATING;
+
+        public static Ranking of(String name) {
+            return switch (name) {
+                case "ratings-count" -> RATINGS_COUNT;
+                case "weighted-rating" -> WEIGHTED_RATING;
+                default -> throw new IllegalArgumentException("Unknown ranking: " + name);
+            };
+        }
+
+        long score(int ratingsCount, double averageRating) {
+            if (this == RATINGS_COUNT) return ratingsCount;
+            double weighted = (ratingsCount * averageRating + PRIOR_COUNT * PRIOR_MEAN) / (ratingsCount + PRIOR_COUNT);
+            return Math.round(weighted * 1_000_000);
+        }
+    }
+
+    public static BookIdSet selectTopBookIds(String booksFilePath, int subsetSize) throws IOException {
+        return selectTopBookIds(booksFilePath, subsetSize, 1);
+    }
+
+    public static BookIdSet selectTopBookIds(String booksFilePath, int subsetSize,
+                                             int parseThreads) throws IOException {
+        return selectTopBooks(booksFilePath, subsetSize, parseThreads).bookIds();
+    }
+
+    public static BookSubset selectTopBooks(String booksFilePath, int subsetSize,
+                                            int parseThreads) throws IOException {
+        return selectTopBooks(booksFilePath, subsetSize, parseThreads, Ranking.RATINGS_COUNT, 0);
+    }
+
+    /**
+     * Selects the top books by {@code ranking} and remembers where their lines start, so
+     * {@link BookDataLoader#loadBooks(String, BookSubset, String, String)} can read only
+     * those lines instead of scanning the file again. With {@code yearQuota > 0} no
+     * publication year contributes more than that many books.
+     *
+     * Each parse thread keeps its own primitive heap (one per year with a quota) while it
+     * works through its chunks; the heaps are merged once the scan is done.
+     */
+    public static BookSubset selectTopBooks(String booksFilePath, int subsetSize, int parseThreads,
+                                            Ranking ranking, int yearQuota) throws IOException {
+        log.info("Scanning books file to select top {} by {}{}...", subsetSize, ranking,
+                yearQuota > 0 ? " (at most " + yearQuota + " per publication year)" : "");
+
+        JsonProjection projection = JsonProjection.fields(
+                "book_id", "ratings_count", "average_rating", "publication_year");
+        Map<Thread, Selection> selections = new ConcurrentHashMap<>();
+        Map<Long, String> otherIds = new ConcurrentHashMap<>();
+        long total;
+
+        try (JsonLineReader reader = new JsonLineReader(booksFilePath, parseThreads, false)) {
+            Iterator<Object> it = reader.streamWithPositions((position, buf, offset, length) -> {
+                JsonProjection.Record record = projection.parse(buf, offset, length);
+                if (record == null) return null;
+
+                int ratingsCount = record.intValue("ratings_count");
+                if (ratingsCount <= 0) return null;
+                String text = record.text("book_id");
+                long bookId = BookIdSet.numericId(text);
+                if (bookId < 0) {
+                    if (text.isEmpty()) return null;
+                    bookId = OTHER_ID | position;
+                    otherIds.put(bookId, text);
                 }
+                selections.computeIfAbsent(Thread.currentThread(), t -> new Selection(subsetSize, yearQuota))
+                        .offer(ranking.score(ratingsCount, record.doubleValue("average_rating")), bookId,
+                                position, record.intValue("publication_year"));
+                return null;
+            }).iterator();
+            while (it.hasNext()) {
+                it.next();
             }
+            total = reader.linesScanned();
+        }
+
+        Selection merged = new Selection(subsetSize, yearQuota);
+        for (Selection selection : selections.values()) {
+            merged.addAll(selection);
         }
+        TopKHeap top = merged.top(subsetSize);
 
-        Set<String> selectedIds = new HashSet<>();
-        for (BookEntry entry : minHeap) {
-            selectedIds.add(entry.bookId);
+        Map<String, Long> selected = new HashMap<>();
+        for (int i = 0; i < top.size(); i++) {
+            long id = top.id(i);
+            selected.put(id >= OTHER_ID ? otherIds.get(id) : Long.toString(id), top.position(i));
         }
 
-        log.info("Selected {} books from {} total (min ratings_count in subset: {})",
-                selectedIds.size(), total,
-                minHeap.isEmpty() ? 0 : minHeap.peek().ratingsCount);
+        if (!otherIds.isEmpty()) {
+            log.info("Ranked {} books with non-numeric IDs by line position on ties", otherIds.size());
+        }
+        log.info("Selected {} books from {} total (lowest {} in subset: {})",
+                selected.size(), total, ranking,
+                ranking == Ranking.RATINGS_COUNT ? top.minScore() : String.format("%.3f", top.minScore() / 1e6));
 
-        return selectedIds;
+        return BookSubset.of(selected);
     }
 
-    private static int parseIntSafe(String value) {
-        try {
-            return Integer.parseInt(value.trim());
-        } catch (NumberFormatException e) {
-            return 0;
+    /** One thread's candidates: a single heap, or one heap per publication year under a quota. */
+    private static final class Selection {
+        private final int subsetSize;
+        private final int yearQuota;
+        private final TopKHeap all;
+        private final Map<Integer, TopKHeap> byYear;
+
+        Selection(int subsetSize, int yearQuota) {
+            this.subsetSize = subsetSize;
+            this.yearQuota = yearQuota;
+            this.all = yearQuota > 0 ? null : new TopKHeap(subsetSize);
+            this.byYear = yearQuota > 0 ? new HashMap<>() : null;
+        }
+
+        void offer(long score, long bookId, long position, int year) {
+            heap(year).offer(score, bookId, position);
         }
-    }
 
-    private record BookEntry(String bookId, int ratingsCount) {}
+        void addAll(Selection other) {
+            if (all != null) {
+                all.addAll(other.all);
+            } else {
+                other.byYear.forEach((year, heap) -> heap(year).addAll(heap));
+            }
+        }
+
+        /**
+         * The overall top {@code k}. Under a quota this is the top {@code k} of the per-year
+         * winners, which is exactly the best selection with at most {@code yearQuota} a year.
+         */
+        TopKHeap top(int k) {
+            if (all != null) return all;
+            TopKHeap top = new TopKHeap(k);
+            for (TopKHeap heap : byYear.values()) {
+                top.addAll(heap);
+            }
+            return top;
+        }
+
+        private TopKHeap heap(int year) {
+            if (all != null) return all;
+            return byYear.computeIfAbsent(year, y -> new TopKHeap(Math.min(yearQuota, subsetSize)));
+        }
+    }
 }
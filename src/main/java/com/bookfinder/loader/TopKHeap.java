@@ -0,0 +1,104 @@
+package com.bookfinder.loader;
+
+import java.util.Arrays;
+
+/**
+ * Bounded min-heap of (score, id, position) triples in parallel primitive arrays, keeping
+ * the {@code capacity} highest-scoring entries. Ties on score go to the smaller ID so the
+ * selection does not depend on the order in which parallel chunks arrive.
+ */
+final class TopKHeap {
+
+    private final int capacity;
+    private long[] scores;
+    private long[] ids;
+    private long[] positions;
+    private int size;
+
+    TopKHeap(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        int initial = Math.min(this.capacity, 64);
+        this.scores = new long[initial];
+        this.ids = new long[initial];
+        this.positions = new long[initial];
+    }
+
+    void offer(long score, long id, long position) {
+        if (capacity == 0) return;
+        if (size < capacity) {
+            if (size == scores.length) {
+                int grown = (int) Math.min(capacity, scores.length * 2L);
+                scores = Arrays.copyOf(scores, grown);
+                ids = Arrays.copyOf(ids, grown);
+                positions = Arrays.copyOf(positions, grown);
+            }
+            scores[size] = score;
+            ids[size] = id;
+            positions[size] = position;
+            siftUp(size++);
+        } else if (worse(0, score, id)) {
+            scores[0] = score;
+            ids[0] = id;
+            positions[0] = position;
+            siftDown(0);
+        }
+    }
+
+    void addAll(TopKHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.scores[i], other.ids[i], other.positions[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Lowest score kept, or 0 when empty. */
+    long minScore() {
+        return size == 0 ? 0 : scores[0];
+    }
+
+    long id(int i) {
+        return ids[i];
+    }
+
+    long position(int i) {
+        return positions[i];
+    }
+
+    /** Whether the entry at {@code i} ranks below (score, id). */
+    private boolean worse(int i, long score, long id) {
+        return scores[i] < score || (scores[i] == score && ids[i] > id);
+    }
+
+    private boolean worse(int i, int j) {
+        return worse(i, scores[j], ids[j]);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int child = left + 1 < size && worse(left + 1, left) ? left + 1 : left;
+            if (!worse(child, i)) break;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long s = scores[i]; scores[i] = scores[j]; scores[j] = s;
+        long d = ids[i]; ids[i] = ids[j]; ids[j] = d;
+        long p = positions[i]; positions[i] = positions[j]; positions[j] = p;
+    }
+}
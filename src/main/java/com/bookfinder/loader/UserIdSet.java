@@ -0,0 +1,94 @@
+package com.bookfinder.loader;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set of Goodreads user IDs. Those are 32 lowercase hex digits, so each is kept as the
+ * two longs it spells: 16 bytes per slot instead of a 32-character {@code String} and a
+ * {@code HashMap} entry, and compared exactly rather than by hash.
+ *
+ * IDs of any other shape are kept in an ordinary {@link HashSet}.
+ */
+public final class UserIdSet {
+
+    private static final int HEX_LENGTH = 32;
+
+    /** Pairs of (high, low) halves; (0, 0) marks an empty slot. */
+    private long[] slots;
+    private int size;
+    private boolean containsZero;
+    private final Set<String> other = new HashSet<>();
+
+    public UserIdSet() {
+        this(1024);
+    }
+
+    public UserIdSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        this.slots = new long[capacity * 2];
+    }
+
+    /** Adds {@code id}; returns {@code false} if it was already present. */
+    public boolean add(String id) {
+        if (!isHex(id)) return other.add(id);
+        long high = parse(id, 0);
+        long low = parse(id, HEX_LENGTH / 2);
+        if (high == 0 && low == 0) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int mask = slots.length / 2 - 1;
+        int i = mix(high, low) & mask;
+        while (slots[2 * i] != 0 || slots[2 * i + 1] != 0) {
+            if (slots[2 * i] == high && slots[2 * i + 1] == low) return false;
+            i = (i + 1) & mask;
+        }
+        slots[2 * i] = high;
+        slots[2 * i + 1] = low;
+        if (++size > slots.length / 2 * 3 / 4) grow();
+        return true;
+    }
+
+    public int size() {
+        return size + other.size();
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        int mask = slots.length / 2 - 1;
+        for (int j = 0; j < old.length; j += 2) {
+            if (old[j] == 0 && old[j + 1] == 0) continue;
+            int i = mix(old[j], old[j + 1]) & mask;
+            while (slots[2 * i] != 0 || slots[2 * i + 1] != 0) i = (i + 1) & mask;
+            slots[2 * i] = old[j];
+            slots[2 * i + 1] = old[j + 1];
+        }
+    }
+
+    /** Exactly 32 lowercase hex digits, so the two halves print back to the same ID. */
+    static boolean isHex(String id) {
+        if (id.length() != HEX_LENGTH) return false;
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        return true;
+    }
+
+    private static long parse(String id, int from) {
+        long value = 0;
+        for (int i = from; i < from + HEX_LENGTH / 2; i++) {
+            value = value << 4 | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static int mix(long high, long low) {
+        long h = (high ^ Long.rotateLeft(low, 31)) * 0xff51afd7ed558ccdL;
+        return (int) (h ^ (h >>> 33));
+    }
+}
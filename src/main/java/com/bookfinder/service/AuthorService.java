@@ -13,9 +13,11 @@ import java.util.*;
 public class AuthorService {
 
     private final Driver driver;
+    private final CountCache counts;
 
-    public AuthorService(Driver driver) {
+    public AuthorService(Driver driver, CountCache counts) {
         this.driver = driver;
+        this.counts = counts;
     }
 
     public AuthorDTO getAuthor(String authorId) {
@@ -36,22 +38,49 @@ public class AuthorService {
     }
 
     public PaginatedResponse<BookSearchResultDTO> getAuthorBooks(String authorId, int page, int size) {
+        return getAuthorBooks(authorId, page, size, null);
+    }
+
+    /**
+     * One page of an author's books by ratings count; with a {@code cursor} from the previous
+     * page the query seeks past it instead of skipping earlier rows.
+     */
+    public PaginatedResponse<BookSearchResultDTO> getAuthorBooks(String authorId, int page, int size, String cursor) {
+        PageCursor after = cursor == null || cursor.isBlank() ? null : PageCursor.decode(cursor, "ratingsCount", "DESC");
+        Map<String, Object> params = new HashMap<>();
+        params.put("authorId", authorId);
+        params.put("skip", after == null ? (long) page * size : 0L);
+        params.put("limit", size + 1);
+        String seek = "";
+        if (after != null) {
+            seek = "WHERE " + PageCursor.seek("b", "ratingsCount", "DESC");
+            after.addParams(params);
+        }
+
         try (Session session = session()) {
-            long total = session.run("""
+            long total = counts.exact("author-books|" + authorId, () -> session.run("""
                 MATCH (a:Author {authorId: $authorId})-[:WROTE]->(b:Book)
                 RETURN count(b) AS cnt
-                """, Map.of("authorId", authorId)).single().get("cnt").asLong();
+                """, Map.of("authorId", authorId)).single().get("cnt").asLong());
 
-            var result = session.run("""
+            var result = session.run(String.format("""
                 MATCH (a:Author {authorId: $authorId})-[:WROTE]->(b:Book)
+                %s
                 RETURN b
-                ORDER BY b.ratingsCount DESC
+                ORDER BY b.ratingsCount DESC, b.bookId
                 SKIP $skip LIMIT $limit
-                """, Map.of("authorId", authorId, "skip", (long) page * size, "limit", size));
+                """, seek), params);
 
             List<BookSearchResultDTO> books = new ArrayList<>();
+            Node last = null;
+            String nextCursor = null;
             while (result.hasNext()) {
                 Node node = result.next().get("b").asNode();
+                if (books.size() == size) {
+                    nextCursor = PageCursor.after(last, "ratingsCount", "DESC");
+                    break;
+                }
+                last = node;
                 BookSearchResultDTO dto = new BookSearchResultDTO();
                 dto.setBookId(node.get("bookId").asString(""));
                 dto.setTitle(node.get("title").asString(""));
@@ -65,7 +94,9 @@ public class AuthorService {
                 books.add(dto);
             }
             books = DeduplicationUtil.deduplicateBooks(books);
-            return new PaginatedResponse<>(books, page, size, total);
+            PaginatedResponse<BookSearchResultDTO> response = new PaginatedResponse<>(books, page, size, total);
+            response.setNextCursor(nextCursor);
+            return response;
         }
     }
 
@@ -0,0 +1,353 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.SearchProperties;
+import com.bookfinder.dto.BookSearchResultDTO;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory prefix index for autocomplete over book titles and author names.
+ *
+ * Every title, clean title and author name is normalized (lower case, accents and
+ * punctuation dropped, spaces collapsed) and indexed once per word start, so "hunger ga"
+ * finds "The Hunger Games". The entries form a sorted array of (text, offset, book)
+ * triples in parallel int arrays; a keystroke is two binary searches for the range of
+ * entries starting with the query, then the books in that range ranked by ratings count.
+ * Ranked lists for ranges too large to rank per request (one or two letters) are cached
+ * for the life of the snapshot. Rebuilt on a schedule and after data loads; until the
+ * first build finishes callers fall back to a wildcard full-text query.
+ */
+@Service
+public class AutocompleteIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AutocompleteIndex.class);
+
+    /** Ranges with more entries than this have their ranking cached. */
+    private static final int CACHED_RANGE = 512;
+    /** Length of the cached rankings, and so the largest limit they can serve. */
+    private static final int CACHED_LIMIT = 50;
+    private static final int MAX_CACHED_PREFIXES = 20_000;
+
+    private final Driver driver;
+    private final SearchProperties props;
+    private volatile Snapshot snapshot;
+
+    public AutocompleteIndex(Driver driver, SearchProperties props) {
+        this.driver = driver;
+        this.props = props;
+    }
+
+    /**
+     * Up to {@code limit} books with a title or author name containing a word that starts
+     * with {@code query}, most rated first. Returns {@code null} if the index has not been
+     * built yet.
+     */
+    public List<BookSearchResultDTO> complete(String query, int limit) {
+        Snapshot current = snapshot;
+        return current == null ? null : current.complete(normalize(query), limit);
+    }
+
+    @Scheduled(initialDelayString = "${bookfinder.search.autocomplete-initial-delay:PT0S}",
+               fixedDelayString = "${bookfinder.search.autocomplete-refresh:PT30M}")
+    public void rebuild() {
+        if (!props.isAutocompleteIndex()) return;
+        long start = System.currentTimeMillis();
+        try {
+            Snapshot built = load();
+            snapshot = built;
+            log.info("Autocomplete index rebuilt: {} books, {} prefixes in {} ms",
+                    built.bookIds.length, built.entryText.length, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Autocomplete index rebuild failed, keeping the previous one: {}", e.getMessage());
+        }
+    }
+
+    /** Lower case without accents, with every run of non-alphanumerics turned into one space. */
+    static String normalize(String text) {
+        if (text == null) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                if (space && !out.isEmpty()) out.append(' ');
+                out.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return out.toString();
+    }
+
+    private Snapshot load() {
+        Snapshot s = new Snapshot();
+        Map<String, Integer> bookIndex = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        List<Value> books = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        Map<String, Integer> textIndex = new HashMap<>();
+        int[] sourceText = new int[1 << 12];
+        int[] sourceBook = new int[1 << 12];
+        int sources = 0;
+
+        try (Session session = driver.session(SessionConfig.forDatabase("neo4j"))) {
+            var bookResult = session.run("""
+                MATCH (b:Book)
+                RETURN b.bookId AS bookId, b {.title, .titleClean, .averageRating, .ratingsCount,
+                                              .imageUrl, .publisher, .pubYear, .genre} AS props
+                """);
+            List<String[]> titles = new ArrayList<>();
+            while (bookResult.hasNext()) {
+                var record = bookResult.next();
+                String bookId = record.get("bookId").asString("");
+                if (bookId.isEmpty() || bookIndex.putIfAbsent(bookId, ids.size()) != null) continue;
+                ids.add(bookId);
+                Value props = record.get("props");
+                books.add(props);
+                titles.add(new String[] {props.get("title").asString(""), props.get("titleClean").asString("")});
+            }
+            for (int book = 0; book < titles.size(); book++) {
+                String title = normalize(titles.get(book)[0]);
+                String clean = normalize(titles.get(book)[1]);
+                for (String text : clean.equals(title) ? List.of(title) : List.of(title, clean)) {
+                    if (text.isEmpty()) continue;
+                    if (sources == sourceText.length) {
+                        sourceText = Arrays.copyOf(sourceText, sources * 2);
+                        sourceBook = Arrays.copyOf(sourceBook, sources * 2);
+                    }
+                    sourceText[sources] = intern(text, texts, textIndex);
+                    sourceBook[sources++] = book;
+                }
+            }
+
+            var authorResult = session.run("""
+                MATCH (a:Author)-[:WROTE]->(b:Book)
+                RETURN a.name AS name, b.bookId AS bookId
+                """);
+            while (authorResult.hasNext()) {
+                var record = authorResult.next();
+                Integer book = bookIndex.get(record.get("bookId").asString(""));
+                String name = normalize(record.get("name").asString(""));
+                if (book == null || name.isEmpty()) continue;
+                if (sources == sourceText.length) {
+                    sourceText = Arrays.copyOf(sourceText, sources * 2);
+                    sourceBook = Arrays.copyOf(sourceBook, sources * 2);
+                }
+                sourceText[sources] = intern(name, texts, textIndex);
+                sourceBook[sources++] = book;
+            }
+        }
+
+        int bookCount = ids.size();
+        s.bookIds = ids.toArray(new String[0]);
+        s.titles = new String[bookCount];
+        s.cleanTitles = new String[bookCount];
+        s.imageUrls = new String[bookCount];
+        s.publishers = new String[bookCount];
+        s.genres = new String[bookCount];
+        s.averageRatings = new double[bookCount];
+        s.ratingsCounts = new int[bookCount];
+        s.pubYears = new int[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            Value b = books.get(i);
+            s.titles[i] = b.get("title").asString("");
+            s.cleanTitles[i] = b.get("titleClean").asString("");
+            s.imageUrls[i] = b.get("imageUrl").asString("");
+            s.publishers[i] = b.get("publisher").asString("");
+            s.genres[i] = b.get("genre").asString("");
+            s.averageRatings[i] = b.get("averageRating").asDouble(0);
+            s.ratingsCounts[i] = b.get("ratingsCount").asInt(0);
+            s.pubYears[i] = b.get("pubYear").asInt(0);
+        }
+        s.texts = texts.toArray(new String[0]);
+
+        // One entry per word start of every (text, book) source
+        int entries = 0;
+        for (int i = 0; i < sources; i++) entries += wordStarts(s.texts[sourceText[i]]);
+        s.entryText = new int[entries];
+        s.entryOffset = new int[entries];
+        s.entryBook = new int[entries];
+        int e = 0;
+        for (int i = 0; i < sources; i++) {
+            String text = s.texts[sourceText[i]];
+            for (int offset = 0; offset < text.length(); offset++) {
+                if (offset > 0 && text.charAt(offset - 1) != ' ') continue;
+                s.entryText[e] = sourceText[i];
+                s.entryOffset[e] = offset;
+                s.entryBook[e++] = sourceBook[i];
+            }
+        }
+        s.sortEntries();
+        return s;
+    }
+
+    private static int intern(String text, List<String> texts, Map<String, Integer> textIndex) {
+        Integer known = textIndex.putIfAbsent(text, texts.size());
+        if (known != null) return known;
+        texts.add(text);
+        return texts.size() - 1;
+    }
+
+    private static int wordStarts(String text) {
+        int starts = text.isEmpty() ? 0 : 1;
+        for (int i = 1; i < text.length(); i++) {
+            if (text.charAt(i - 1) == ' ') starts++;
+        }
+        return starts;
+    }
+
+    /** One build of the index; after loading only the ranking cache changes. */
+    private static final class Snapshot {
+        private String[] bookIds;
+        private String[] titles;
+        private String[] cleanTitles;
+        private String[] imageUrls;
+        private String[] publishers;
+        private String[] genres;
+        private double[] averageRatings;
+        private int[] ratingsCounts;
+        private int[] pubYears;
+
+        private String[] texts;
+        private int[] entryText;
+        private int[] entryOffset;
+        private int[] entryBook;
+
+        private final Map<String, int[]> rankings = new ConcurrentHashMap<>();
+
+        List<BookSearchResultDTO> complete(String prefix, int limit) {
+            if (prefix.isEmpty() || limit <= 0) return List.of();
+            int from = bound(prefix, false);
+            int to = bound(prefix, true);
+            if (from == to) return List.of();
+
+            int[] ranked;
+            if (to - from > CACHED_RANGE && limit <= CACHED_LIMIT) {
+                ranked = rankings.get(prefix);
+                if (ranked == null) {
+                    ranked = rank(from, to, CACHED_LIMIT);
+                    if (rankings.size() >= MAX_CACHED_PREFIXES) rankings.clear();
+                    rankings.put(prefix, ranked);
+                }
+            } else {
+                ranked = rank(from, to, limit);
+            }
+
+            List<BookSearchResultDTO> books = new ArrayList<>(Math.min(limit, ranked.length));
+            for (int i = 0; i < ranked.length && books.size() < limit; i++) {
+                books.add(toSearchResult(ranked[i]));
+            }
+            return DeduplicationUtil.deduplicateBooks(books);
+        }
+
+        /** The distinct books of entries {@code [from, to)}, most rated first, at most {@code limit}. */
+        private int[] rank(int from, int to, int limit) {
+            // Ratings count above book index, so equal keys are the same book and sit next to each other
+            long[] keys = new long[to - from];
+            for (int e = from; e < to; e++) {
+                int book = entryBook[e];
+                keys[e - from] = (long) ratingsCounts[book] << 32 | (Integer.MAX_VALUE - book);
+            }
+            Arrays.sort(keys);
+            int[] ranked = new int[Math.min(limit, keys.length)];
+            int size = 0;
+            for (int i = keys.length - 1; i >= 0 && size < ranked.length; i--) {
+                if (i < keys.length - 1 && keys[i] == keys[i + 1]) continue;
+                ranked[size++] = Integer.MAX_VALUE - (int) keys[i];
+            }
+            return Arrays.copyOf(ranked, size);
+        }
+
+        /**
+         * First entry not below {@code prefix}, or with {@code past} the first entry after
+         * those starting with it.
+         */
+        private int bound(String prefix, boolean past) {
+            int lo = 0, hi = entryText.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = comparePrefix(mid, prefix);
+                if (cmp < 0 || (past && cmp == 0)) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /** Compares entry {@code e} with {@code prefix}; 0 if the entry starts with it. */
+        private int comparePrefix(int e, String prefix) {
+            String text = texts[entryText[e]];
+            int offset = entryOffset[e];
+            int n = Math.min(text.length() - offset, prefix.length());
+            for (int i = 0; i < n; i++) {
+                int d = text.charAt(offset + i) - prefix.charAt(i);
+                if (d != 0) return d;
+            }
+            return text.length() - offset >= prefix.length() ? 0 : -1;
+        }
+
+        private int compareEntries(int a, int b) {
+            String ta = texts[entryText[a]], tb = texts[entryText[b]];
+            int oa = entryOffset[a], ob = entryOffset[b];
+            int n = Math.min(ta.length() - oa, tb.length() - ob);
+            for (int i = 0; i < n; i++) {
+                int d = ta.charAt(oa + i) - tb.charAt(ob + i);
+                if (d != 0) return d;
+            }
+            return (ta.length() - oa) - (tb.length() - ob);
+        }
+
+        /** Sorts the entry arrays by their text from the offset on, with a merge sort over indices. */
+        private void sortEntries() {
+            int n = entryText.length;
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            int[] buffer = new int[n];
+            for (int width = 1; width < n; width *= 2) {
+                for (int lo = 0; lo < n - width; lo += 2 * width) {
+                    int mid = lo + width, hi = Math.min(lo + 2 * width, n);
+                    int i = lo, j = mid, k = lo;
+                    while (i < mid && j < hi) buffer[k++] = compareEntries(order[j], order[i]) < 0 ? order[j++] : order[i++];
+                    while (i < mid) buffer[k++] = order[i++];
+                    while (j < hi) buffer[k++] = order[j++];
+                    System.arraycopy(buffer, lo, order, lo, hi - lo);
+                }
+            }
+            int[] text = new int[n], offset = new int[n], book = new int[n];
+            for (int i = 0; i < n; i++) {
+                text[i] = entryText[order[i]];
+                offset[i] = entryOffset[order[i]];
+                book[i] = entryBook[order[i]];
+            }
+            entryText = text;
+            entryOffset = offset;
+            entryBook = book;
+        }
+
+        private BookSearchResultDTO toSearchResult(int book) {
+            BookSearchResultDTO dto = new BookSearchResultDTO();
+            dto.setBookId(bookIds[book]);
+            dto.setTitle(titles[book]);
+            dto.setTitleClean(cleanTitles[book]);
+            dto.setAverageRating(averageRatings[book]);
+            dto.setRatingsCount(ratingsCounts[book]);
+            dto.setImageUrl(imageUrls[book]);
+            dto.setPublisher(publishers[book]);
+            dto.setPubYear(pubYears[book]);
+            dto.setGenre(genres[book]);
+            return dto;
+        }
+    }
+}
@@ -14,51 +14,78 @@ import java.util.*;
 public class BookService {
 
     private final Driver driver;
+    private final CountCache counts;
 
-    public BookService(Driver driver) {
+    public BookService(Driver driver, CountCache counts) {
         this.driver = driver;
+        this.counts = counts;
     }
 
     public PaginatedResponse<BookSearchResultDTO> getBooks(int page, int size, String sortBy,
                                                             String direction, String genre) {
+        return getBooks(page, size, sortBy, direction, genre, null);
+    }
+
+    /**
+     * One page of books. With a {@code cursor} from a previous page's {@code nextCursor} the
+     * page seeks past that book instead of skipping {@code page * size} rows.
+     */
+    public PaginatedResponse<BookSearchResultDTO> getBooks(int page, int size, String sortBy,
+                                                            String direction, String genre, String cursor) {
         String sortField = switch (sortBy) {
-            case "title" -> "b.title";
-            case "pubYear" -> "b.pubYear";
-            case "averageRating" -> "b.averageRating";
-            default -> "b.ratingsCount";
+            case "title" -> "title";
+            case "pubYear" -> "pubYear";
+            case "averageRating" -> "averageRating";
+            default -> "ratingsCount";
         };
         String dir = "ASC".equalsIgnoreCase(direction) ? "ASC" : "DESC";
+        PageCursor after = cursor == null || cursor.isBlank() ? null : PageCursor.decode(cursor, sortField, dir);
 
         Map<String, Object> params = new HashMap<>();
-        params.put("skip", (long) page * size);
-        params.put("limit", size);
+        params.put("skip", after == null ? (long) page * size : 0L);
+        params.put("limit", size + 1);
 
         String genreFilter = "";
         if (genre != null && !genre.isBlank()) {
-            genreFilter = " {genre: $genre}";
+            genreFilter = "-[:BELONGS_TO]->(:Genre {key: $genre})";
             params.put("genre", genre);
         }
+        String seek = "";
+        if (after != null) {
+            seek = "WHERE " + PageCursor.seek("b", sortField, dir);
+            after.addParams(params);
+        }
 
         try (Session session = session()) {
-            long total = session.run(
-                    String.format("MATCH (b:Book%s) RETURN count(b) AS cnt", genreFilter), params)
-                    .single().get("cnt").asLong();
+            String countQuery = String.format("MATCH (b:Book)%s RETURN count(b) AS cnt", genreFilter);
+            long total = counts.exact("books|" + (genreFilter.isEmpty() ? "" : genre),
+                    () -> session.run(countQuery, params).single().get("cnt").asLong());
 
             String query = String.format("""
-                MATCH (b:Book%s)
+                MATCH (b:Book)%s
+                %s
                 RETURN b
-                ORDER BY %s %s
+                ORDER BY b.%s %s, b.bookId
                 SKIP $skip LIMIT $limit
-                """, genreFilter, sortField, dir);
+                """, genreFilter, seek, sortField, dir);
 
             var result = session.run(query, params);
             List<BookSearchResultDTO> books = new ArrayList<>();
+            Node last = null;
+            String nextCursor = null;
             while (result.hasNext()) {
                 Node node = result.next().get("b").asNode();
+                if (books.size() == size) {
+                    nextCursor = PageCursor.after(last, sortField, dir);
+                    break;
+                }
                 books.add(toSearchResult(node));
+                last = node;
             }
             books = DeduplicationUtil.deduplicateBooks(books);
-            return new PaginatedResponse<>(books, page, size, total);
+            PaginatedResponse<BookSearchResultDTO> response = new PaginatedResponse<>(books, page, size, total);
+            response.setNextCursor(nextCursor);
+            return response;
         }
     }
 
@@ -124,10 +151,10 @@ public class BookService {
 
     public PaginatedResponse<ReviewDTO> getBookReviews(String bookId, int page, int size) {
         try (Session session = session()) {
-            long total = session.run("""
+            long total = counts.exact("reviews|" + bookId, () -> session.run("""
                 MATCH (u:User)-[r:REVIEWED]->(b:Book {bookId: $bookId})
                 RETURN count(r) AS cnt
-                """, Map.of("bookId", bookId)).single().get("cnt").asLong();
+                """, Map.of("bookId", bookId)).single().get("cnt").asLong());
 
             var result = session.run("""
                 MATCH (u:User)-[r:REVIEWED]->(b:Book {bookId: $bookId})
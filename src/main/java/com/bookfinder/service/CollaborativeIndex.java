@@ -0,0 +1,355 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.RecommendationProperties;
+import com.bookfinder.dto.RecommendationDTO;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory item-item collaborative filtering over the users who rated books 4 or more.
+ *
+ * The rating >= 4 part of the INTERACTED graph is held as two compressed sparse row
+ * adjacency lists (book to users and user to books) over interned int IDs, next to the
+ * few book properties a {@link RecommendationDTO} needs. "Readers also liked" is then a
+ * two-hop walk counting co-occurrences in a pooled int array, with no database round
+ * trip. Per-user recommendations sum each liked book's nearest neighbours by cosine
+ * similarity, which are worked out on first use and kept for the life of the snapshot.
+ * The snapshot is rebuilt from Neo4j on a schedule and swapped in atomically; until the
+ * first build finishes callers fall back to Cypher.
+ */
+@Service
+public class CollaborativeIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(CollaborativeIndex.class);
+
+    /** Neighbours kept per book for per-user recommendations. */
+    private static final int USER_NEIGHBOURS = 50;
+
+    private final Driver driver;
+    private final RecommendationProperties props;
+    private volatile Snapshot snapshot;
+
+    public CollaborativeIndex(Driver driver, RecommendationProperties props) {
+        this.driver = driver;
+        this.props = props;
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Books most often rated 4+ by the readers who rated {@code bookId} 4+, ordered by the
+     * number of such readers, then average rating. Returns {@code null} if the index has
+     * not been built yet.
+     */
+    public List<RecommendationDTO> readersAlsoLiked(String bookId, int limit) {
+        Snapshot current = snapshot;
+        return current == null ? null : current.readersAlsoLiked(bookId, limit);
+    }
+
+    /**
+     * Books most similar to the user's {@code liked} books, leaving out {@code seen}: the
+     * sum of each liked book's cosine similarity to the candidate over its top neighbours.
+     * Returns {@code null} if the index has not been built yet.
+     */
+    public List<RecommendationDTO> forUser(Collection<String> liked, Collection<String> seen, int limit) {
+        Snapshot current = snapshot;
+        return current == null ? null : current.forUser(liked, seen, limit);
+    }
+
+    @Scheduled(initialDelayString = "${bookfinder.recommendation.collaborative-initial-delay:PT0S}",
+               fixedDelayString = "${bookfinder.recommendation.collaborative-refresh:PT30M}")
+    public void rebuild() {
+        if (!props.isCollaborativeIndex()) return;
+        long start = System.currentTimeMillis();
+        try {
+            Snapshot built = load();
+            snapshot = built;
+            log.info("Collaborative index rebuilt: {} books, {} users, {} ratings >= 4 in {} ms",
+                    built.bookIds.length, built.userOffsets.length - 1, built.bookUsers.length,
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Collaborative index rebuild failed, keeping the previous one: {}", e.getMessage());
+        }
+    }
+
+    private Snapshot load() {
+        Snapshot s = new Snapshot();
+        Map<String, Integer> bookIndex = new HashMap<>();
+        List<String> ids = new ArrayList<>();
+        List<Value> books = new ArrayList<>();
+        int[] edgeUser = new int[1 << 16];
+        int[] edgeBook = new int[1 << 16];
+        int edges = 0;
+        Map<String, Integer> userIndex = new HashMap<>();
+
+        try (Session session = driver.session(SessionConfig.forDatabase("neo4j"))) {
+            var bookResult = session.run("""
+                MATCH (b:Book)
+                RETURN b.bookId AS bookId, b {.title, .titleClean, .averageRating, .ratingsCount,
+                                              .imageUrl, .pubYear, .genre} AS props
+                """);
+            while (bookResult.hasNext()) {
+                var record = bookResult.next();
+                String bookId = record.get("bookId").asString("");
+                if (bookId.isEmpty() || bookIndex.putIfAbsent(bookId, ids.size()) != null) continue;
+                ids.add(bookId);
+                books.add(record.get("props"));
+            }
+
+            var edgeResult = session.run("""
+                MATCH (u:User)-[i:INTERACTED]->(b:Book)
+                WHERE i.rating >= 4
+                RETURN u.userId AS userId, b.bookId AS bookId
+                """);
+            while (edgeResult.hasNext()) {
+                var record = edgeResult.next();
+                Integer book = bookIndex.get(record.get("bookId").asString(""));
+                if (book == null) continue;
+                int user = userIndex.computeIfAbsent(record.get("userId").asString(""), id -> userIndex.size());
+                if (edges == edgeUser.length) {
+                    edgeUser = Arrays.copyOf(edgeUser, edges * 2);
+                    edgeBook = Arrays.copyOf(edgeBook, edges * 2);
+                }
+                edgeUser[edges] = user;
+                edgeBook[edges++] = book;
+            }
+        }
+
+        int bookCount = ids.size();
+        if (bookCount >= 1 << 27) throw new IllegalStateException("Too many books to index: " + bookCount);
+        s.bookIds = ids.toArray(new String[0]);
+        s.titles = new String[bookCount];
+        s.cleanTitles = new String[bookCount];
+        s.imageUrls = new String[bookCount];
+        s.genres = new String[bookCount];
+        s.averageRatings = new double[bookCount];
+        s.ratingsCounts = new int[bookCount];
+        s.pubYears = new int[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            Value b = books.get(i);
+            s.titles[i] = b.get("title").asString("");
+            s.cleanTitles[i] = b.get("titleClean").asString("");
+            s.imageUrls[i] = b.get("imageUrl").asString("");
+            s.genres[i] = b.get("genre").asString("");
+            s.averageRatings[i] = b.get("averageRating").asDouble(0);
+            s.ratingsCounts[i] = b.get("ratingsCount").asInt(0);
+            s.pubYears[i] = b.get("pubYear").asInt(0);
+        }
+        s.bookIndex = bookIndex;
+        s.neighbours = new AtomicReferenceArray<>(bookCount);
+
+        s.bookOffsets = new int[bookCount + 1];
+        s.bookUsers = new int[edges];
+        csr(edgeBook, edgeUser, edges, s.bookOffsets, s.bookUsers);
+        s.userOffsets = new int[userIndex.size() + 1];
+        s.userBooks = new int[edges];
+        csr(edgeUser, edgeBook, edges, s.userOffsets, s.userBooks);
+        return s;
+    }
+
+    /** Fills {@code offsets} and {@code neighbours} so row r's neighbours are {@code neighbours[offsets[r] .. offsets[r + 1])}. */
+    private static void csr(int[] rows, int[] columns, int edges, int[] offsets, int[] neighbours) {
+        for (int e = 0; e < edges; e++) offsets[rows[e] + 1]++;
+        for (int r = 1; r < offsets.length; r++) offsets[r] += offsets[r - 1];
+        int[] fill = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int e = 0; e < edges; e++) neighbours[fill[rows[e]]++] = columns[e];
+    }
+
+    private record Neighbours(int[] books, float[] scores) {}
+
+    /** One build of the index; after loading only the neighbour cache changes. */
+    private static final class Snapshot {
+        private Map<String, Integer> bookIndex;
+        private String[] bookIds;
+        private String[] titles;
+        private String[] cleanTitles;
+        private String[] imageUrls;
+        private String[] genres;
+        private double[] averageRatings;
+        private int[] ratingsCounts;
+        private int[] pubYears;
+
+        private int[] bookOffsets;
+        private int[] bookUsers;
+        private int[] userOffsets;
+        private int[] userBooks;
+
+        /** Each book's top neighbours by cosine similarity, filled in on first use. */
+        private AtomicReferenceArray<Neighbours> neighbours;
+
+        /** Co-occurrence counters sized to this snapshot, reused across requests. */
+        private final Queue<int[]> counters = new ConcurrentLinkedQueue<>();
+        /** Per-user score accumulators sized to this snapshot, reused across requests. */
+        private final Queue<float[]> accumulators = new ConcurrentLinkedQueue<>();
+
+        List<RecommendationDTO> readersAlsoLiked(String bookId, int limit) {
+            Integer book = bookIndex.get(bookId);
+            if (book == null || limit <= 0) return List.of();
+
+            int[] counts = counters.poll();
+            if (counts == null) counts = new int[bookIds.length];
+            int[] touched = new int[64];
+            int size = 0;
+            try {
+                for (int i = bookOffsets[book]; i < bookOffsets[book + 1]; i++) {
+                    int user = bookUsers[i];
+                    for (int j = userOffsets[user]; j < userOffsets[user + 1]; j++) {
+                        int other = userBooks[j];
+                        if (other == book || counts[other]++ != 0) continue;
+                        if (size == touched.length) touched = Arrays.copyOf(touched, size * 2);
+                        touched[size++] = other;
+                    }
+                }
+
+                // count, then average rating in thousandths, then index, packed so one sort ranks them
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    int other = touched[i];
+                    long rating = Math.max(0, Math.min(8191, Math.round(averageRatings[other] * 1000)));
+                    keys[i] = (long) Math.min(counts[other], (1 << 23) - 1) << 40 | rating << 27 | other;
+                }
+                Arrays.sort(keys);
+
+                List<RecommendationDTO> recs = new ArrayList<>(Math.min(limit, size));
+                for (int i = size - 1; i >= 0 && recs.size() < limit; i--) {
+                    int other = (int) (keys[i] & ((1 << 27) - 1));
+                    recs.add(toRecommendation(other, counts[other]));
+                }
+                return DeduplicationUtil.deduplicateRecommendations(recs);
+            } finally {
+                for (int i = 0; i < size; i++) counts[touched[i]] = 0;
+                counters.offer(counts);
+            }
+        }
+
+        List<RecommendationDTO> forUser(Collection<String> liked, Collection<String> seen, int limit) {
+            int[] seeds = liked.stream().map(bookIndex::get).filter(Objects::nonNull)
+                    .mapToInt(Integer::intValue).distinct().toArray();
+            if (seeds.length == 0 || limit <= 0) return List.of();
+
+            // Neighbour lists not built yet are worked out in parallel, so a long history is not paid for serially
+            int[] missing = Arrays.stream(seeds).filter(b -> neighbours.get(b) == null).toArray();
+            if (missing.length > 1) {
+                IntStream.of(missing).parallel().forEach(this::neighboursOf);
+            }
+
+            float[] scores = accumulators.poll();
+            if (scores == null) scores = new float[bookIds.length];
+            int[] touched = new int[256];
+            int size = 0;
+            try {
+                for (int seed : seeds) {
+                    Neighbours n = neighboursOf(seed);
+                    for (int i = 0; i < n.books().length; i++) {
+                        int other = n.books()[i];
+                        if (scores[other] == 0) {
+                            if (size == touched.length) touched = Arrays.copyOf(touched, size * 2);
+                            touched[size++] = other;
+                        }
+                        scores[other] += n.scores()[i];
+                    }
+                }
+                for (int seed : seeds) scores[seed] = 0;
+                for (String bookId : seen) {
+                    Integer book = bookIndex.get(bookId);
+                    if (book != null) scores[book] = 0;
+                }
+
+                // Non-negative float bits order like the floats, so score and index pack into one sortable key
+                long[] keys = new long[size];
+                int candidates = 0;
+                for (int i = 0; i < size; i++) {
+                    int other = touched[i];
+                    if (scores[other] > 0) keys[candidates++] = (long) Float.floatToIntBits(scores[other]) << 32 | other;
+                }
+                Arrays.sort(keys, 0, candidates);
+
+                List<RecommendationDTO> recs = new ArrayList<>(Math.min(limit, candidates));
+                for (int i = candidates - 1; i >= 0 && recs.size() < limit; i--) {
+                    int other = (int) keys[i];
+                    RecommendationDTO dto = toRecommendation(other, 0);
+                    dto.setStrategy("user");
+                    dto.setScore((double) scores[other]);
+                    recs.add(dto);
+                }
+                return DeduplicationUtil.deduplicateRecommendations(recs);
+            } finally {
+                for (int i = 0; i < size; i++) scores[touched[i]] = 0;
+                accumulators.offer(scores);
+            }
+        }
+
+        private Neighbours neighboursOf(int book) {
+            Neighbours cached = neighbours.get(book);
+            if (cached != null) return cached;
+
+            int[] counts = counters.poll();
+            if (counts == null) counts = new int[bookIds.length];
+            int[] touched = new int[64];
+            int size = 0;
+            try {
+                for (int i = bookOffsets[book]; i < bookOffsets[book + 1]; i++) {
+                    int user = bookUsers[i];
+                    for (int j = userOffsets[user]; j < userOffsets[user + 1]; j++) {
+                        int other = userBooks[j];
+                        if (other == book || counts[other]++ != 0) continue;
+                        if (size == touched.length) touched = Arrays.copyOf(touched, size * 2);
+                        touched[size++] = other;
+                    }
+                }
+
+                double degree = bookOffsets[book + 1] - bookOffsets[book];
+                long[] keys = new long[size];
+                for (int i = 0; i < size; i++) {
+                    int other = touched[i];
+                    float cosine = (float) (counts[other]
+                            / Math.sqrt(degree * (bookOffsets[other + 1] - bookOffsets[other])));
+                    keys[i] = (long) Float.floatToIntBits(cosine) << 32 | other;
+                }
+                Arrays.sort(keys);
+
+                int kept = Math.min(size, USER_NEIGHBOURS);
+                int[] books = new int[kept];
+                float[] scores = new float[kept];
+                for (int i = 0; i < kept; i++) {
+                    long key = keys[size - 1 - i];
+                    books[i] = (int) key;
+                    scores[i] = Float.intBitsToFloat((int) (key >>> 32));
+                }
+                Neighbours computed = new Neighbours(books, scores);
+                return neighbours.compareAndSet(book, null, computed) ? computed : neighbours.get(book);
+            } finally {
+                for (int i = 0; i < size; i++) counts[touched[i]] = 0;
+                counters.offer(counts);
+            }
+        }
+
+        private RecommendationDTO toRecommendation(int book, int commonUsers) {
+            RecommendationDTO dto = new RecommendationDTO();
+            dto.setBookId(bookIds[book]);
+            dto.setTitle(titles[book]);
+            dto.setTitleClean(cleanTitles[book]);
+            dto.setAverageRating(averageRatings[book]);
+            dto.setRatingsCount(ratingsCounts[book]);
+            dto.setImageUrl(imageUrls[book]);
+            dto.setPubYear(pubYears[book]);
+            dto.setGenre(genres[book]);
+            dto.setStrategy("collaborative");
+            dto.setScore((double) commonUsers);
+            return dto;
+        }
+    }
+}
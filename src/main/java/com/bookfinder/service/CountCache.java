@@ -0,0 +1,59 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.SearchProperties;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Totals for paginated listings and searches, keyed by the normalized filter, so paging
+ * through a result runs the count query once rather than on every page. Entries expire
+ * after {@code bookfinder.search.count-cache-ttl} and are all dropped by
+ * {@link #invalidate()} once a data load finishes.
+ */
+@Service
+public class CountCache {
+
+    /** A page total; {@code exact} is false when counting stopped at a cap. */
+    public record Total(long value, boolean exact) {}
+
+    private record Entry(Total total, long expiresAt) {}
+
+    private final SearchProperties props;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public CountCache(SearchProperties props) {
+        this.props = props;
+    }
+
+    /** The exact total for {@code key}, running {@code counter} only when it is not cached. */
+    public long exact(String key, Supplier<Long> counter) {
+        return get(key, () -> new Total(counter.get(), true)).value();
+    }
+
+    public Total get(String key, Supplier<Total> counter) {
+        Total total = peek(key);
+        if (total == null) {
+            total = counter.get();
+            put(key, total);
+        }
+        return total;
+    }
+
+    /** The cached total for {@code key}, or {@code null}, for callers that count as a side effect. */
+    public Total peek(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && System.nanoTime() - entry.expiresAt() < 0 ? entry.total() : null;
+    }
+
+    public void put(String key, Total total) {
+        if (entries.size() >= props.getCountCacheSize()) entries.clear();
+        entries.put(key, new Entry(total, System.nanoTime() + props.getCountCacheTtl().toNanos()));
+    }
+
+    public void invalidate() {
+        entries.clear();
+    }
+}
@@ -14,9 +14,11 @@ import java.util.*;
 public class GenreService {
 
     private final Driver driver;
+    private final CountCache counts;
 
-    public GenreService(Driver driver) {
+    public GenreService(Driver driver, CountCache counts) {
         this.driver = driver;
+        this.counts = counts;
     }
 
     public List<GenreDTO> getAllGenres() {
@@ -42,43 +44,74 @@ public class GenreService {
 
     public PaginatedResponse<BookSearchResultDTO> getGenreBooks(String genreKey, int page, int size,
                                                                   String sortBy, String direction) {
+        return getGenreBooks(genreKey, page, size, sortBy, direction, null);
+    }
+
+    /**
+     * One page of a genre's books; with a {@code cursor} from the previous page the query
+     * seeks past it instead of skipping earlier rows.
+     */
+    public PaginatedResponse<BookSearchResultDTO> getGenreBooks(String genreKey, int page, int size,
+                                                                  String sortBy, String direction, String cursor) {
         String sortField = switch (sortBy) {
-            case "title" -> "b.title";
-            case "pubYear" -> "b.pubYear";
-            case "averageRating" -> "b.averageRating";
-            default -> "b.ratingsCount";
+            case "title" -> "title";
+            case "pubYear" -> "pubYear";
+            case "averageRating" -> "averageRating";
+            default -> "ratingsCount";
         };
         String dir = "ASC".equalsIgnoreCase(direction) ? "ASC" : "DESC";
+        PageCursor after = cursor == null || cursor.isBlank() ? null : PageCursor.decode(cursor, sortField, dir);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("genre", genreKey);
+        params.put("skip", after == null ? (long) page * size : 0L);
+        params.put("limit", size + 1);
+        String seek = "";
+        if (after != null) {
+            seek = "WHERE " + PageCursor.seek("b", sortField, dir);
+            after.addParams(params);
+        }
 
         try (Session session = session()) {
-            long total = session.run("""
-                MATCH (b:Book {genre: $genre})
+            // Same key as the book listing filtered to this genre, which counts the same rows
+            long total = counts.exact("books|" + genreKey, () -> session.run("""
+                MATCH (b:Book)-[:BELONGS_TO]->(:Genre {key: $genre})
                 RETURN count(b) AS cnt
-                """, Map.of("genre", genreKey)).single().get("cnt").asLong();
+                """, Map.of("genre", genreKey)).single().get("cnt").asLong());
 
             String query = String.format("""
-                MATCH (b:Book {genre: $genre})
+                MATCH (b:Book)-[:BELONGS_TO]->(:Genre {key: $genre})
+                %s
                 RETURN b
-                ORDER BY %s %s
+                ORDER BY b.%s %s, b.bookId
                 SKIP $skip LIMIT $limit
-                """, sortField, dir);
+                """, seek, sortField, dir);
 
-            var result = session.run(query,
-                    Map.of("genre", genreKey, "skip", (long) page * size, "limit", size));
+            var result = session.run(query, params);
 
             List<BookSearchResultDTO> books = new ArrayList<>();
+            Node last = null;
+            String nextCursor = null;
             while (result.hasNext()) {
-                books.add(toSearchResult(result.next().get("b").asNode()));
+                Node node = result.next().get("b").asNode();
+                if (books.size() == size) {
+                    nextCursor = PageCursor.after(last, sortField, dir);
+                    break;
+                }
+                books.add(toSearchResult(node));
+                last = node;
             }
             books = DeduplicationUtil.deduplicateBooks(books);
-            return new PaginatedResponse<>(books, page, size, total);
+            PaginatedResponse<BookSearchResultDTO> response = new PaginatedResponse<>(books, page, size, total);
+            response.setNextCursor(nextCursor);
+            return response;
         }
     }
 
     public List<ShelfDTO> getGenreTopShelves(String genreKey, int limit) {
         try (Session session = session()) {
             var result = session.run("""
-                MATCH (b:Book {genre: $genre})-[r:SHELVED_AS]->(s:Shelf)
+                MATCH (:Genre {key: $genre})<-[:BELONGS_TO]-(b:Book)-[r:SHELVED_AS]->(s:Shelf)
                 WITH s.name AS name, count(b) AS bookCount, sum(r.count) AS totalCount
                 RETURN name, bookCount, totalCount
                 ORDER BY bookCount DESC
@@ -1,5 +1,6 @@
 package com.bookfinder.service;
 
+import com.bookfinder.config.RecommendationProperties;
 import com.bookfinder.dto.GraphVisualizationDTO;
 import com.bookfinder.dto.GraphVisualizationDTO.EdgeDTO;
 import com.bookfinder.dto.GraphVisualizationDTO.NodeDTO;
@@ -25,9 +26,11 @@ public class GraphService {
     private static final String COLOR_EDGE = "#CCCCCC";
 
     private final Driver driver;
+    private final RecommendationProperties props;
 
-    public GraphService(Driver driver) {
+    public GraphService(Driver driver, RecommendationProperties props) {
         this.driver = driver;
+        this.props = props;
     }
 
     public GraphVisualizationDTO bookNeighborhood(String bookId, int depth, boolean includeUsers) {
@@ -185,18 +188,29 @@ public class GraphService {
                 edges.add(new EdgeDTO("book_" + bookId, "book_" + rec.get("bookId").asString(""), "SIMILAR_TO", "#4A90D9"));
             }
 
-            // Shelf-based recommendations
-            var shelfResult = session.run("""
-                MATCH (b:Book {bookId: $bookId})-[:SHELVED_AS]->(s:Shelf)<-[:SHELVED_AS]-(rec:Book)
-                WHERE rec.bookId <> $bookId
-                WITH rec, collect(DISTINCT s.name) AS shelves, count(DISTINCT s) AS cnt
-                WHERE cnt >= 3
-                RETURN rec, shelves
-                ORDER BY cnt DESC
-                LIMIT 5
-                """, Map.of("bookId", bookId));
-            while (shelfResult.hasNext()) {
-                Record rec = shelfResult.next();
+            // Shelf-based recommendations, live for books without SHELF_SIMILAR edges yet
+            List<Record> shelfRecs = List.of();
+            if (props.isPrecomputedSimilarity()) {
+                shelfRecs = session.run("""
+                    MATCH (b:Book {bookId: $bookId})-[s:SHELF_SIMILAR]->(rec:Book)
+                    WITH rec, max(s.score) AS score
+                    RETURN rec
+                    ORDER BY score DESC
+                    LIMIT 5
+                    """, Map.of("bookId", bookId)).list();
+            }
+            if (shelfRecs.isEmpty()) {
+                shelfRecs = session.run("""
+                    MATCH (b:Book {bookId: $bookId})-[:SHELVED_AS]->(s:Shelf)<-[:SHELVED_AS]-(rec:Book)
+                    WHERE rec.bookId <> $bookId
+                    WITH rec, count(DISTINCT s) AS cnt
+                    WHERE cnt >= 3
+                    RETURN rec
+                    ORDER BY cnt DESC
+                    LIMIT 5
+                    """, Map.of("bookId", bookId)).list();
+            }
+            for (Record rec : shelfRecs) {
                 Node recNode = rec.get("rec").asNode();
                 addBookNode(nodes, recNode, 18);
                 edges.add(new EdgeDTO("book_" + bookId, "book_" + recNode.get("bookId").asString(""), "SHELF_SIMILAR", "#5CB85C"));
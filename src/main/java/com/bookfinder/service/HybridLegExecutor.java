@@ -0,0 +1,28 @@
+package com.bookfinder.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the hybrid strategy's legs. Each blocks on its own session, so one virtual thread
+ * per leg; legs still running at shutdown are interrupted so their sessions close.
+ */
+@Component
+public class HybridLegExecutor {
+
+    private final ExecutorService legs = Executors.newVirtualThreadPerTaskExecutor();
+
+    public <T> Future<T> submit(Callable<T> leg) {
+        return legs.submit(leg);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        legs.shutdownNow();
+    }
+}
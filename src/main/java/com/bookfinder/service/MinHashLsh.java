@@ -0,0 +1,151 @@
+package com.bookfinder.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Nearest neighbours by Jaccard similarity over sets of small integers (a book's shelves),
+ * without comparing every pair of sets that share an element.
+ *
+ * Each set gets a MinHash signature of {@code bands * rows} values; two sets agree on one
+ * value with probability equal to their Jaccard score. Signatures are cut into bands and
+ * sets whose band matches land in the same bucket, so pairs above roughly
+ * {@code (1 / bands) ^ (1 / rows)} become candidates with high probability. Only
+ * candidates are scored, with the exact Jaccard of the two sets. Buckets larger than
+ * {@code maxBucket} come from near-universal elements and are skipped rather than
+ * expanded quadratically; similar sets still meet in their other bands.
+ */
+final class MinHashLsh {
+
+    record Neighbour(int set, int shared, double jaccard) {}
+
+    private final int bands;
+    private final int rows;
+    private final int maxBucket;
+    private final long[] seeds;
+
+    MinHashLsh(int bands, int rows, int maxBucket, long seed) {
+        this.bands = bands;
+        this.rows = rows;
+        this.maxBucket = maxBucket;
+        this.seeds = new long[bands * rows];
+        long s = seed;
+        for (int i = 0; i < seeds.length; i++) {
+            s += 0x9E3779B97F4A7C15L;
+            seeds[i] = mix(s);
+        }
+    }
+
+    /**
+     * The top {@code topN} neighbours of every set among those sharing at least
+     * {@code minShared} elements with it, best first. Each set must be sorted ascending.
+     */
+    Neighbour[][] neighbours(int[][] sets, int topN, int minShared) {
+        int n = sets.length;
+        if (n >= 1 << 24) throw new IllegalArgumentException("Too many sets for LSH bucketing: " + n);
+
+        long[][] signatures = new long[n][];
+        IntStream.range(0, n).parallel().forEach(i -> signatures[i] = signature(sets[i]));
+
+        // Per band: sets ordered by bucket, and each set's bucket bounds in that order
+        int[][] order = new int[bands][];
+        int[][] bucketStart = new int[bands][];
+        int[][] bucketEnd = new int[bands][];
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                long key = signatures[i] == null ? mix(~i) : bandKey(signatures[i], band);
+                keys[i] = (key >>> 24) << 24 | i;
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[n];
+            int[] start = new int[n];
+            int[] end = new int[n];
+            int from = 0;
+            for (int k = 0; k <= n; k++) {
+                if (k == n || (k > from && keys[k] >>> 24 != keys[from] >>> 24)) {
+                    for (int m = from; m < k; m++) {
+                        int set = (int) (keys[m] & 0xFFFFFF);
+                        start[set] = from;
+                        end[set] = k;
+                    }
+                    from = k;
+                }
+                if (k < n) sorted[k] = (int) (keys[k] & 0xFFFFFF);
+            }
+            order[band] = sorted;
+            bucketStart[band] = start;
+            bucketEnd[band] = end;
+        });
+
+        Neighbour[][] result = new Neighbour[n][];
+        ThreadLocal<int[]> seen = ThreadLocal.withInitial(() -> new int[n]);
+        IntStream.range(0, n).parallel().forEach(i -> {
+            int[] mark = seen.get();
+            List<Neighbour> candidates = new ArrayList<>();
+            if (signatures[i] != null) {
+                for (int band = 0; band < bands; band++) {
+                    int from = bucketStart[band][i];
+                    int to = bucketEnd[band][i];
+                    if (to - from > maxBucket) continue;
+                    for (int k = from; k < to; k++) {
+                        int j = order[band][k];
+                        if (j == i || mark[j] == i + 1) continue;
+                        mark[j] = i + 1;
+                        int shared = intersection(sets[i], sets[j]);
+                        if (shared < minShared) continue;
+                        candidates.add(new Neighbour(j, shared,
+                                (double) shared / (sets[i].length + sets[j].length - shared)));
+                    }
+                }
+            }
+            candidates.sort((a, b) -> a.jaccard() != b.jaccard()
+                    ? Double.compare(b.jaccard(), a.jaccard())
+                    : a.shared() != b.shared() ? Integer.compare(b.shared(), a.shared())
+                    : Integer.compare(a.set(), b.set()));
+            result[i] = candidates.subList(0, Math.min(topN, candidates.size())).toArray(new Neighbour[0]);
+        });
+        return result;
+    }
+
+    /** MinHash signature, or {@code null} for an empty set, which matches nothing. */
+    private long[] signature(int[] set) {
+        if (set.length == 0) return null;
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (int element : set) {
+            for (int h = 0; h < seeds.length; h++) {
+                long value = mix(element ^ seeds[h]);
+                if (value < signature[h]) signature[h] = value;
+            }
+        }
+        return signature;
+    }
+
+    private long bandKey(long[] signature, int band) {
+        long key = band;
+        for (int r = 0; r < rows; r++) {
+            key = mix(key * 31 + signature[band * rows + r]);
+        }
+        return key;
+    }
+
+    private static int intersection(int[] a, int[] b) {
+        int i = 0, j = 0, shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { shared++; i++; j++; }
+        }
+        return shared;
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -81,7 +81,7 @@ public class MoodService {
 
         String genreFilter = "";
         if (genre != null && !genre.isBlank() && !"all".equalsIgnoreCase(genre)) {
-            genreFilter = "AND b.genre = $genre\n";
+            genreFilter = "AND (b)-[:BELONGS_TO]->(:Genre {key: $genre})\n";
             params.put("genre", genre);
         }
 
@@ -0,0 +1,84 @@
+package com.bookfinder.service;
+
+import org.neo4j.driver.types.Node;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Keyset pagination over book listings sorted by one property with {@code bookId} as
+ * tiebreaker. A cursor is the sort order plus the last row's book ID and sort value,
+ * base64url encoded so clients treat it as opaque. The next page seeks past that row
+ * with a range predicate on the sorted property, which the property's range index can
+ * answer directly, instead of skipping every earlier row.
+ */
+final class PageCursor {
+
+    private final Object value;
+    private final String bookId;
+
+    private PageCursor(Object value, String bookId) {
+        this.value = value;
+        this.bookId = bookId;
+    }
+
+    /**
+     * Parses a cursor issued for the same {@code property} and {@code direction}. Fails
+     * with {@link IllegalArgumentException} for malformed cursors or a different sort.
+     */
+    static PageCursor decode(String cursor, String property, String direction) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 3);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (parts.length != 3 || parts[2].isEmpty()) throw new IllegalArgumentException("Malformed cursor");
+        if (!parts[0].equals(property + " " + direction)) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+        String raw = parts[2].substring(1);
+        try {
+            Object value = switch (parts[2].charAt(0)) {
+                case 'l' -> Long.parseLong(raw);
+                case 'd' -> Double.parseDouble(raw);
+                case 's' -> raw;
+                default -> throw new IllegalArgumentException("Malformed cursor");
+            };
+            return new PageCursor(value, parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+
+    /** The cursor for the page after {@code last}, the last book of the current page. */
+    static String after(Node last, String property, String direction) {
+        // The value goes last since a title may itself contain a newline
+        String encoded = switch (last.get(property).asObject()) {
+            case Long l -> "l" + l;
+            case Double d -> "d" + d;
+            case null -> "s";
+            case Object o -> "s" + o;
+        };
+        String cursor = property + " " + direction + "\n" + last.get("bookId").asString("") + "\n" + encoded;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Cypher predicate selecting the rows after the cursor, using {@code $after} and
+     * {@code $afterId}. The leading inclusive bound is the index-seekable part.
+     */
+    static String seek(String variable, String property, String direction) {
+        String field = variable + "." + property;
+        String id = variable + ".bookId";
+        return "DESC".equals(direction)
+                ? field + " <= $after AND (" + field + " < $after OR " + id + " > $afterId)"
+                : field + " >= $after AND (" + field + " > $after OR " + id + " > $afterId)";
+    }
+
+    void addParams(Map<String, Object> params) {
+        params.put("after", value);
+        params.put("afterId", bookId);
+    }
+}
@@ -1,37 +1,170 @@
 package com.bookfinder.service;
 
+import com.bookfinder.config.DataLoadProperties;
+import com.bookfinder.config.RecommendationProperties;
 import com.bookfinder.dto.RecommendationDTO;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Session;
 import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Value;
 import org.neo4j.driver.types.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Service
 public class RecommendationService {
 
+    private static final Logger log = LoggerFactory.getLogger(RecommendationService.class);
+
+    /** Most seed books one batch request may ask about. */
+    private static final int MAX_SEEDS = 100;
+
     private final Driver driver;
+    private final RecommendationProperties props;
+    private final DataLoadProperties dataProps;
+    private final CollaborativeIndex collaborativeIndex;
+    private final HybridLegExecutor hybridLegs;
 
-    public RecommendationService(Driver driver) {
+    public RecommendationService(Driver driver, RecommendationProperties props, DataLoadProperties dataProps,
+                                 CollaborativeIndex collaborativeIndex, HybridLegExecutor hybridLegs) {
         this.driver = driver;
+        this.props = props;
+        this.dataProps = dataProps;
+        this.collaborativeIndex = collaborativeIndex;
+        this.hybridLegs = hybridLegs;
     }
 
     public List<RecommendationDTO> getSimilar(String bookId, String strategy, int limit) {
+        return getSimilar(bookId, strategy, limit, null);
+    }
+
+    /**
+     * @param weights for the hybrid strategy, "strategy:weight" pairs that replace the
+     *                configured weights; strategies not listed are not run
+     */
+    public List<RecommendationDTO> getSimilar(String bookId, String strategy, int limit, String weights) {
+        return getSimilar(List.of(bookId), strategy, limit, weights).get(bookId);
+    }
+
+    /**
+     * Recommendations for each of {@code bookIds}, keyed by seed in request order. Each
+     * strategy resolves all seeds with one query.
+     */
+    public Map<String, List<RecommendationDTO>> getSimilar(List<String> bookIds, String strategy,
+                                                           int limit, String weights) {
+        List<String> seeds = seeds(bookIds);
         return switch (strategy) {
-            case "graph" -> graphSimilarity(bookId, limit);
-            case "shelf" -> shelfSimilarity(bookId, limit);
-            case "collaborative" -> collaborativeFiltering(bookId, limit);
-            case "hybrid" -> hybridRecommendation(bookId, limit);
-            default -> graphSimilarity(bookId, limit);
+            case "graph" -> graphSimilarity(seeds, limit);
+            case "shelf" -> shelfSimilarity(seeds, limit);
+            case "collaborative" -> collaborativeFiltering(seeds, limit);
+            case "hybrid" -> hybridRecommendation(seeds, limit, weights);
+            default -> graphSimilarity(seeds, limit);
         };
     }
 
+    /**
+     * Recommendations for {@code bookIds} as a set: each seed's results merged, with the
+     * seeds themselves left out. A book scores by its rank in each seed's list, summed, so
+     * books several seeds agree on come first whatever the scale of the raw scores.
+     */
+    public List<RecommendationDTO> getSimilarToSet(List<String> bookIds, String strategy,
+                                                   int limit, String weights) {
+        List<String> seeds = seeds(bookIds);
+        Set<String> excluded = new HashSet<>(seeds);
+        Map<String, List<RecommendationDTO>> bySeed = getSimilar(seeds, strategy, limit + seeds.size(), weights);
+
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, RecommendationDTO> books = new HashMap<>();
+        for (List<RecommendationDTO> recs : bySeed.values()) {
+            for (int i = 0; i < recs.size(); i++) {
+                RecommendationDTO rec = recs.get(i);
+                if (excluded.contains(rec.getBookId())) continue;
+                scores.merge(rec.getBookId(), (double) (recs.size() - i) / recs.size(), Double::sum);
+                RecommendationDTO kept = books.putIfAbsent(rec.getBookId(), rec);
+                if (kept != null && kept.getSources() != null && rec.getSources() != null) {
+                    for (String source : rec.getSources()) {
+                        if (!kept.getSources().contains(source)) kept.getSources().add(source);
+                    }
+                }
+            }
+        }
+
+        List<RecommendationDTO> merged = scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(limit)
+                .map(e -> {
+                    RecommendationDTO dto = books.get(e.getKey());
+                    dto.setScore(e.getValue());
+                    return dto;
+                })
+                .collect(Collectors.toList());
+        return DeduplicationUtil.deduplicateRecommendations(merged);
+    }
+
     public List<RecommendationDTO> readersAlsoLiked(String bookId, int limit) {
-        return collaborativeFiltering(bookId, limit);
+        return collaborativeFiltering(List.of(bookId), limit).get(bookId);
+    }
+
+    /**
+     * Books for a user from their history: the neighbours of the books they rated 4 or
+     * more, summed across those books, leaving out everything they have interacted with or
+     * reviewed. Returns {@code null} for an unknown user.
+     */
+    public List<RecommendationDTO> forUser(String userId, int limit) {
+        List<String> liked;
+        Set<String> seen = new HashSet<>();
+        try (Session session = session()) {
+            var result = session.run("""
+                MATCH (u:User {userId: $userId})
+                OPTIONAL MATCH (u)-[i:INTERACTED]->(b:Book)
+                WITH u, collect(CASE WHEN i.rating >= 4 THEN b.bookId END) AS liked, collect(b.bookId) AS interacted
+                OPTIONAL MATCH (u)-[:REVIEWED]->(r:Book)
+                RETURN liked, interacted, collect(r.bookId) AS reviewed
+                """, Map.of("userId", userId));
+            if (!result.hasNext()) return null;
+            Record history = result.next();
+            liked = history.get("liked").asList(Value::asString);
+            seen.addAll(history.get("interacted").asList(Value::asString));
+            seen.addAll(history.get("reviewed").asList(Value::asString));
+        }
+        if (liked.isEmpty()) return List.of();
+
+        if (props.isCollaborativeIndex()) {
+            List<RecommendationDTO> recs = collaborativeIndex.forUser(liked, seen, limit);
+            if (recs != null) return recs;
+        }
+        // Until the index is built: raw co-occurrence counts instead of summed cosine similarity
+        try (Session session = session()) {
+            var result = session.run("""
+                MATCH (u:User {userId: $userId})-[i1:INTERACTED]->(b:Book)<-[i2:INTERACTED]-(other:User)
+                WHERE i1.rating >= 4 AND i2.rating >= 4 AND other <> u
+                MATCH (other)-[i3:INTERACTED]->(rec:Book)
+                WHERE i3.rating >= 4 AND NOT rec.bookId IN $seen
+                WITH rec, count(*) AS score
+                RETURN rec, score
+                ORDER BY score DESC, rec.averageRating DESC
+                LIMIT $limit
+                """, Map.of("userId", userId, "seen", List.copyOf(seen), "limit", limit));
+
+            List<RecommendationDTO> recs = new ArrayList<>();
+            while (result.hasNext()) {
+                Record rec = result.next();
+                RecommendationDTO dto = toRecommendation(rec.get("rec").asNode());
+                dto.setStrategy("user");
+                dto.setScore(rec.get("score").asDouble(0));
+                recs.add(dto);
+            }
+            return DeduplicationUtil.deduplicateRecommendations(recs);
+        }
     }
 
     public List<RecommendationDTO> topInShelf(String shelfName, int limit) {
@@ -75,128 +208,220 @@ public class RecommendationService {
         }
     }
 
-    private List<RecommendationDTO> graphSimilarity(String bookId, int limit) {
-        try (Session session = session()) {
-            // 1-hop and 2-hop similar books
-            var result = session.run("""
-                MATCH (b:Book {bookId: $bookId})-[:SIMILAR_TO*1..2]->(rec:Book)
-                WHERE rec.bookId <> $bookId
-                WITH rec, count(*) AS paths
-                RETURN rec, paths
-                ORDER BY paths DESC, rec.ratingsCount DESC
+    private Map<String, List<RecommendationDTO>> graphSimilarity(List<String> seeds, int limit) {
+        // 1-hop and 2-hop path counts, precomputed by the loader as SIMILAR_SCORED. While the
+        // loader replaces them a book can have an old and a new edge to the same book, hence max()
+        String precomputed = """
+            UNWIND $bookIds AS seedId
+            CALL {
+                WITH seedId
+                MATCH (b:Book {bookId: seedId})-[s:SIMILAR_SCORED]->(rec:Book)
+                WITH rec, max(s.paths) AS score
+                ORDER BY score DESC, rec.ratingsCount DESC
                 LIMIT $limit
-                """, Map.of("bookId", bookId, "limit", limit));
-
-            List<RecommendationDTO> recs = new ArrayList<>();
-            while (result.hasNext()) {
-                Record rec = result.next();
-                Node node = rec.get("rec").asNode();
-                RecommendationDTO dto = toRecommendation(node);
-                dto.setStrategy("graph");
-                dto.setScore(rec.get("paths").asDouble(1));
-                recs.add(dto);
+                RETURN collect({rec: rec, score: score}) AS recs
             }
-            return DeduplicationUtil.deduplicateRecommendations(recs);
-        }
+            RETURN seedId, recs
+            """;
+        String live = """
+            UNWIND $bookIds AS seedId
+            CALL {
+                WITH seedId
+                MATCH (b:Book {bookId: seedId})-[:SIMILAR_TO*1..2]->(rec:Book)
+                WHERE rec.bookId <> seedId
+                WITH rec, count(*) AS score
+                ORDER BY score DESC, rec.ratingsCount DESC
+                LIMIT $limit
+                RETURN collect({rec: rec, score: score}) AS recs
+            }
+            RETURN seedId, recs
+            """;
+        return precomputedOrLive(seeds, precomputed, live, dataProps.getSimilarTopN(), limit, "graph");
     }
 
-    private List<RecommendationDTO> shelfSimilarity(String bookId, int limit) {
-        try (Session session = session()) {
-            var result = session.run("""
-                MATCH (b:Book {bookId: $bookId})-[:SHELVED_AS]->(s:Shelf)<-[:SHELVED_AS]-(rec:Book)
-                WHERE rec.bookId <> $bookId
-                WITH rec, count(DISTINCT s) AS sharedShelves
-                WHERE sharedShelves >= 3
-                RETURN rec, sharedShelves
-                ORDER BY sharedShelves DESC, rec.ratingsCount DESC
+    private Map<String, List<RecommendationDTO>> shelfSimilarity(List<String> seeds, int limit) {
+        // Jaccard over shelf sets, precomputed as SHELF_SIMILAR by ShelfSimilarityService; a
+        // rebuild briefly leaves two generations of edges, collapsed here by max
+        String precomputed = """
+            UNWIND $bookIds AS seedId
+            CALL {
+                WITH seedId
+                MATCH (b:Book {bookId: seedId})-[s:SHELF_SIMILAR]->(rec:Book)
+                WITH rec, max(s.score) AS score
+                ORDER BY score DESC, rec.ratingsCount DESC
                 LIMIT $limit
-                """, Map.of("bookId", bookId, "limit", limit));
+                RETURN collect({rec: rec, score: score}) AS recs
+            }
+            RETURN seedId, recs
+            """;
+        String live = """
+            UNWIND $bookIds AS seedId
+            CALL {
+                WITH seedId
+                MATCH (b:Book {bookId: seedId})-[:SHELVED_AS]->(s:Shelf)<-[:SHELVED_AS]-(rec:Book)
+                WHERE rec.bookId <> seedId
+                WITH rec, count(DISTINCT s) AS score
+                WHERE score >= 3
+                WITH rec, score
+                ORDER BY score DESC, rec.ratingsCount DESC
+                LIMIT $limit
+                RETURN collect({rec: rec, score: score}) AS recs
+            }
+            RETURN seedId, recs
+            """;
+        return precomputedOrLive(seeds, precomputed, live, props.getShelfNeighbours(), limit, "shelf");
+    }
 
-            List<RecommendationDTO> recs = new ArrayList<>();
-            while (result.hasNext()) {
-                Record rec = result.next();
-                Node node = rec.get("rec").asNode();
-                RecommendationDTO dto = toRecommendation(node);
-                dto.setStrategy("shelf");
-                dto.setScore(rec.get("sharedShelves").asDouble(0));
-                recs.add(dto);
+    private Map<String, List<RecommendationDTO>> collaborativeFiltering(List<String> seeds, int limit) {
+        if (props.isCollaborativeIndex() && collaborativeIndex.isReady()) {
+            Map<String, List<RecommendationDTO>> bySeed = new LinkedHashMap<>();
+            for (String seed : seeds) {
+                List<RecommendationDTO> recs = collaborativeIndex.readersAlsoLiked(seed, limit);
+                if (recs == null) break;
+                bySeed.put(seed, recs);
             }
-            return DeduplicationUtil.deduplicateRecommendations(recs);
+            if (bySeed.size() == seeds.size()) return bySeed;
         }
+        return perSeed(seeds, """
+            UNWIND $bookIds AS seedId
+            CALL {
+                WITH seedId
+                MATCH (b:Book {bookId: seedId})<-[i1:INTERACTED]-(u:User)-[i2:INTERACTED]->(rec:Book)
+                WHERE i1.rating >= 4 AND i2.rating >= 4 AND rec.bookId <> seedId
+                WITH rec, count(DISTINCT u) AS score
+                ORDER BY score DESC, rec.averageRating DESC
+                LIMIT $limit
+                RETURN collect({rec: rec, score: score}) AS recs
+            }
+            RETURN seedId, recs
+            """, limit, "collaborative");
     }
 
-    private List<RecommendationDTO> collaborativeFiltering(String bookId, int limit) {
-        try (Session session = session()) {
-            var result = session.run("""
-                MATCH (b:Book {bookId: $bookId})<-[i1:INTERACTED]-(u:User)-[i2:INTERACTED]->(rec:Book)
-                WHERE i1.rating >= 4 AND i2.rating >= 4 AND rec.bookId <> $bookId
-                WITH rec, count(DISTINCT u) AS commonUsers
-                RETURN rec, commonUsers
-                ORDER BY commonUsers DESC, rec.averageRating DESC
-                LIMIT $limit
-                """, Map.of("bookId", bookId, "limit", limit));
+    /**
+     * Reads {@code precomputed} relationships when enabled, and runs the {@code live} query
+     * for the seeds they gave nothing for, so a database loaded before the relationships
+     * were written (or by bulk import) still gets recommendations. Only the top
+     * {@code precomputedPerBook} are stored per book, so a larger {@code limit} (a big page,
+     * a hybrid leg's fetch budget, a set request's extra seeds) is scored live throughout.
+     */
+    private Map<String, List<RecommendationDTO>> precomputedOrLive(List<String> seeds, String precomputed,
+                                                                   String live, int precomputedPerBook,
+                                                                   int limit, String strategy) {
+        if (!props.isPrecomputedSimilarity() || limit > precomputedPerBook) {
+            return perSeed(seeds, live, limit, strategy);
+        }
+        Map<String, List<RecommendationDTO>> bySeed = perSeed(seeds, precomputed, limit, strategy);
+        List<String> missing = new ArrayList<>();
+        bySeed.forEach((seed, recs) -> {
+            if (recs.isEmpty()) missing.add(seed);
+        });
+        if (!missing.isEmpty()) bySeed.putAll(perSeed(missing, live, limit, strategy));
+        return bySeed;
+    }
 
-            List<RecommendationDTO> recs = new ArrayList<>();
+    /**
+     * Runs a query returning one {@code (seedId, recs)} row per seed, where {@code recs} is a
+     * best-first list of {@code {rec, score}} maps.
+     */
+    private Map<String, List<RecommendationDTO>> perSeed(List<String> seeds, String query, int limit,
+                                                         String strategy) {
+        Map<String, List<RecommendationDTO>> bySeed = new LinkedHashMap<>();
+        for (String seed : seeds) bySeed.put(seed, List.of());
+        try (Session session = session()) {
+            var result = session.run(query, Map.of("bookIds", seeds, "limit", limit));
             while (result.hasNext()) {
-                Record rec = result.next();
-                Node node = rec.get("rec").asNode();
-                RecommendationDTO dto = toRecommendation(node);
-                dto.setStrategy("collaborative");
-                dto.setScore(rec.get("commonUsers").asDouble(0));
-                recs.add(dto);
+                Record row = result.next();
+                List<RecommendationDTO> recs = new ArrayList<>();
+                for (Value value : row.get("recs").values()) {
+                    RecommendationDTO dto = toRecommendation(value.get("rec").asNode());
+                    dto.setStrategy(strategy);
+                    dto.setScore(value.get("score").asDouble(0));
+                    recs.add(dto);
+                }
+                bySeed.put(row.get("seedId").asString(), DeduplicationUtil.deduplicateRecommendations(recs));
             }
-            return DeduplicationUtil.deduplicateRecommendations(recs);
         }
+        return bySeed;
     }
 
-    private List<RecommendationDTO> hybridRecommendation(String bookId, int limit) {
-        // Get results from all strategies
-        List<RecommendationDTO> graphRecs = graphSimilarity(bookId, limit * 2);
-        List<RecommendationDTO> shelfRecs = shelfSimilarity(bookId, limit * 2);
-        List<RecommendationDTO> collabRecs = collaborativeFiltering(bookId, limit * 2);
+    private Map<String, List<RecommendationDTO>> hybridRecommendation(List<String> seeds, int limit,
+                                                                      String weights) {
+        List<ScoringPipeline.Stage> stages = ScoringPipeline.of(props.getHybrid(), weights, limit).stages();
 
-        // Normalize scores within each strategy
-        normalizeScores(graphRecs);
-        normalizeScores(shelfRecs);
-        normalizeScores(collabRecs);
-
-        // Merge with weights
-        Map<String, Double> combinedScores = new HashMap<>();
-        Map<String, RecommendationDTO> bookMap = new HashMap<>();
-
-        for (var rec : graphRecs) {
-            combinedScores.merge(rec.getBookId(), 0.4 * rec.getScore(), Double::sum);
-            bookMap.put(rec.getBookId(), rec);
-        }
-        for (var rec : shelfRecs) {
-            combinedScores.merge(rec.getBookId(), 0.3 * rec.getScore(), Double::sum);
-            bookMap.putIfAbsent(rec.getBookId(), rec);
+        // Run the weighted strategies concurrently, each for every seed at once; a leg that fails
+        // or misses the deadline is left out of the blend
+        Map<ScoringPipeline.Stage, Future<Map<String, List<RecommendationDTO>>>> legs = new LinkedHashMap<>();
+        for (ScoringPipeline.Stage stage : stages) {
+            Strategy leg = strategy(stage.strategy());
+            legs.put(stage, hybridLegs.submit(() -> leg.recommend(seeds, stage.fetch())));
         }
-        for (var rec : collabRecs) {
-            combinedScores.merge(rec.getBookId(), 0.3 * rec.getScore(), Double::sum);
-            bookMap.putIfAbsent(rec.getBookId(), rec);
+        long deadline = System.nanoTime() + props.getHybridLegTimeout().toNanos();
+
+        Map<String, ScoringPipeline> pipelines = new LinkedHashMap<>();
+        for (String seed : seeds) pipelines.put(seed, ScoringPipeline.of(stages));
+        RuntimeException failure = null;
+        boolean anyLeg = false;
+        for (var leg : legs.entrySet()) {
+            String name = leg.getKey().strategy();
+            try {
+                Map<String, List<RecommendationDTO>> bySeed = awaitLeg(leg.getValue(), deadline);
+                pipelines.forEach((seed, pipeline) ->
+                        pipeline.add(leg.getKey(), bySeed.getOrDefault(seed, List.of())));
+                anyLeg = true;
+            } catch (TimeoutException e) {
+                // Cancelled so it does not hold a session after the response has gone out; the
+                // interrupt unwinds the leg's query and its try-with-resources closes the session
+                leg.getValue().cancel(true);
+                log.warn("Hybrid {} leg for {} seed(s) timed out after {}, blending without it",
+                        name, seeds.size(), props.getHybridLegTimeout());
+            } catch (RuntimeException e) {
+                log.warn("Hybrid {} leg for {} seed(s) failed, blending without it: {}",
+                        name, seeds.size(), e.getMessage());
+                failure = e;
+            }
         }
+        if (!anyLeg && failure != null) throw failure;
 
-        List<RecommendationDTO> merged = combinedScores.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .limit(limit)
-                .map(e -> {
-                    RecommendationDTO dto = bookMap.get(e.getKey());
-                    dto.setScore(e.getValue());
-                    dto.setStrategy("hybrid");
-                    return dto;
-                })
-                .collect(Collectors.toList());
-        return DeduplicationUtil.deduplicateRecommendations(merged);
+        Map<String, List<RecommendationDTO>> bySeed = new LinkedHashMap<>();
+        pipelines.forEach((seed, pipeline) ->
+                bySeed.put(seed, DeduplicationUtil.deduplicateRecommendations(pipeline.top(limit))));
+        return bySeed;
+    }
+
+    @FunctionalInterface
+    private interface Strategy {
+        Map<String, List<RecommendationDTO>> recommend(List<String> seeds, int limit);
+    }
+
+    private Strategy strategy(String name) {
+        return switch (name) {
+            case "graph" -> this::graphSimilarity;
+            case "shelf" -> this::shelfSimilarity;
+            case "collaborative" -> this::collaborativeFiltering;
+            default -> throw new IllegalArgumentException("Unknown hybrid strategy: " + name);
+        };
+    }
+
+    private static <T> T awaitLeg(Future<T> leg, long deadline) throws TimeoutException {
+        try {
+            return leg.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a hybrid leg", e);
+        }
     }
 
-    private void normalizeScores(List<RecommendationDTO> recs) {
-        if (recs.isEmpty()) return;
-        double maxScore = recs.stream().mapToDouble(r -> r.getScore() != null ? r.getScore() : 0).max().orElse(1);
-        if (maxScore == 0) maxScore = 1;
-        for (var rec : recs) {
-            rec.setScore((rec.getScore() != null ? rec.getScore() : 0) / maxScore);
+    /** Distinct seed IDs in request order, checked against {@link #MAX_SEEDS}. */
+    private static List<String> seeds(List<String> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) throw new IllegalArgumentException("bookIds must not be empty");
+        List<String> seeds = List.copyOf(new LinkedHashSet<>(bookIds));
+        if (seeds.size() > MAX_SEEDS) {
+            throw new IllegalArgumentException("At most " + MAX_SEEDS + " bookIds per request, got " + seeds.size());
         }
+        return seeds;
     }
 
     private Session session() {
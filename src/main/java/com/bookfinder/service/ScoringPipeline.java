@@ -0,0 +1,228 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.RecommendationProperties.HybridLeg;
+import com.bookfinder.dto.RecommendationDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Blends the results of several recommendation strategies into one ranking.
+ *
+ * Each stage names a strategy, how many candidates to fetch from it, how to put its
+ * scores on a common scale and its weight. Stages with weight 0 are dropped, so a caller
+ * that only weights two strategies only runs those two. Results are accumulated per
+ * candidate in parallel primitive arrays and the top {@code limit} picked with a bounded
+ * heap of candidate indices.
+ */
+final class ScoringPipeline {
+
+    enum Normalization {
+        /** Divide by the best score, so the top result scores 1. */
+        MAX,
+        /** Score by position only: the top of n results scores 1, the last 1/n. */
+        RANK,
+        /** Standard score; a book missing from the strategy counts as average. */
+        Z_SCORE;
+
+        static Normalization of(String name) {
+            return switch (name) {
+                case "max" -> MAX;
+                case "rank" -> RANK;
+                case "z-score" -> Z_SCORE;
+                default -> throw new IllegalArgumentException("Unknown normalization: " + name);
+            };
+        }
+
+        double[] apply(List<RecommendationDTO> recs) {
+            int n = recs.size();
+            double[] scores = new double[n];
+            if (this == RANK) {
+                for (int i = 0; i < n; i++) scores[i] = (double) (n - i) / n;
+                return scores;
+            }
+            for (int i = 0; i < n; i++) {
+                Double score = recs.get(i).getScore();
+                scores[i] = score != null ? score : 0;
+            }
+            if (this == MAX) {
+                double max = 0;
+                for (double score : scores) max = Math.max(max, score);
+                if (max == 0) max = 1;
+                for (int i = 0; i < n; i++) scores[i] /= max;
+            } else {
+                double mean = 0;
+                for (double score : scores) mean += score;
+                mean /= Math.max(1, n);
+                double variance = 0;
+                for (double score : scores) variance += (score - mean) * (score - mean);
+                double sd = Math.sqrt(variance / Math.max(1, n));
+                for (int i = 0; i < n; i++) scores[i] = sd == 0 ? 0 : (scores[i] - mean) / sd;
+            }
+            return scores;
+        }
+    }
+
+    record Stage(String strategy, double weight, int fetch, Normalization normalization) {}
+
+    private final List<Stage> stages;
+    private final Map<String, Integer> candidates = new HashMap<>();
+    private RecommendationDTO[] recs = new RecommendationDTO[64];
+    private double[] scores = new double[64];
+    private int[] stageMasks = new int[64];
+    private int size;
+
+    private ScoringPipeline(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * Stages for {@code limit} results from the configured {@code legs}, in their configured
+     * order. {@code weights} ("graph:0.5,collaborative:0.5"), when given, replaces the
+     * configured weights and drops the legs it does not mention.
+     */
+    static ScoringPipeline of(Map<String, HybridLeg> legs, String weights, int limit) {
+        Map<String, Double> overrides = weights == null || weights.isBlank() ? null : parseWeights(weights);
+        if (overrides != null) {
+            for (String strategy : overrides.keySet()) {
+                if (!legs.containsKey(strategy)) {
+                    throw new IllegalArgumentException("Unknown hybrid strategy: " + strategy);
+                }
+            }
+        }
+        List<Stage> stages = new ArrayList<>();
+        for (var leg : legs.entrySet()) {
+            HybridLeg config = leg.getValue();
+            double weight = overrides != null ? overrides.getOrDefault(leg.getKey(), 0.0) : config.getWeight();
+            if (weight == 0) continue;
+            int fetch = Math.max(1, (int) Math.ceil(limit * config.getFetchFactor()));
+            stages.add(new Stage(leg.getKey(), weight, fetch, Normalization.of(config.getNormalization())));
+        }
+        if (stages.size() > Integer.SIZE) throw new IllegalArgumentException("Too many hybrid strategies");
+        return new ScoringPipeline(stages);
+    }
+
+    /** An empty pipeline over {@code stages}, e.g. another seed's in a batch. */
+    static ScoringPipeline of(List<Stage> stages) {
+        return new ScoringPipeline(stages);
+    }
+
+    private static Map<String, Double> parseWeights(String weights) {
+        Map<String, Double> parsed = new LinkedHashMap<>();
+        for (String part : weights.split(",")) {
+            int colon = part.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Expected strategy:weight, got: " + part.trim());
+            try {
+                double weight = Double.parseDouble(part.substring(colon + 1).trim());
+                if (!Double.isFinite(weight) || weight < 0) throw new NumberFormatException();
+                parsed.put(part.substring(0, colon).trim(), weight);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid weight: " + part.trim());
+            }
+        }
+        return parsed;
+    }
+
+    List<Stage> stages() {
+        return stages;
+    }
+
+    /** Adds one stage's results, best first. */
+    void add(Stage stage, List<RecommendationDTO> results) {
+        double[] normalized = stage.normalization().apply(results);
+        int bit = 1 << stages.indexOf(stage);
+        for (int i = 0; i < normalized.length; i++) {
+            RecommendationDTO rec = results.get(i);
+            Integer known = candidates.putIfAbsent(rec.getBookId(), size);
+            int c = known != null ? known : append(rec);
+            scores[c] += stage.weight() * normalized[i];
+            stageMasks[c] |= bit;
+        }
+    }
+
+    /**
+     * The best {@code limit} candidates by blended score, labelled "hybrid" with the
+     * strategies that returned them. Ties go to the candidate seen first.
+     */
+    List<RecommendationDTO> top(int limit) {
+        int k = Math.max(0, Math.min(limit, size));
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int c = 0; c < size; c++) {
+            if (heapSize < k) {
+                heap[heapSize] = c;
+                siftUp(heap, heapSize++);
+            } else if (k > 0 && better(c, heap[0])) {
+                heap[0] = c;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        // Drain the min-heap back to front so the best candidate comes first
+        RecommendationDTO[] ranked = new RecommendationDTO[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            int c = heap[0];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+            RecommendationDTO dto = recs[c];
+            dto.setScore(scores[c]);
+            dto.setStrategy("hybrid");
+            dto.setSources(sources(stageMasks[c]));
+            ranked[i] = dto;
+        }
+        return new ArrayList<>(Arrays.asList(ranked));
+    }
+
+    private int append(RecommendationDTO rec) {
+        if (size == recs.length) {
+            recs = Arrays.copyOf(recs, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+            stageMasks = Arrays.copyOf(stageMasks, size * 2);
+        }
+        recs[size] = rec;
+        return size++;
+    }
+
+    private List<String> sources(int mask) {
+        List<String> sources = new ArrayList<>(Integer.bitCount(mask));
+        for (int s = 0; s < stages.size(); s++) {
+            if ((mask & 1 << s) != 0) sources.add(stages.get(s).strategy());
+        }
+        return sources;
+    }
+
+    private boolean better(int a, int b) {
+        return scores[a] != scores[b] ? scores[a] > scores[b] : a < b;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(heap[parent], heap[i])) break;
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) return;
+            int worst = left + 1 < size && better(heap[left], heap[left + 1]) ? left + 1 : left;
+            if (!better(heap[i], heap[worst])) return;
+            swap(heap, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+}
@@ -0,0 +1,190 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.SearchProperties;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * What full-text search can filter on before it reads any book nodes.
+ *
+ * Holds each shelf's books as a sorted array of interned book numbers, so the books on
+ * any set of shelves are a {@link BitSet} union away, along with whether the
+ * {@code bookSearch} index covers the {@code bookId} field that shelf filters are
+ * pushed into. A database whose index predates that field keeps filtering in Cypher
+ * until it is reloaded. Rebuilt on a schedule and after data loads.
+ *
+ * A snapshot can lag a load run from another process by up to the refresh interval, so
+ * callers confirm it with {@link #isCurrent(ShelfBooks)} before relying on it to rule books
+ * out. Each snapshot is stamped with the load generation the data loader writes to the
+ * graph ({@code (:LoadState {key: 'graph'})}), which changes at the start and end of every
+ * load, and with the SHELVED_AS count for databases no loader has stamped.
+ */
+@Service
+public class SearchFilterIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchFilterIndex.class);
+
+    /** Fields of {@code bookSearch} that search filters are written against. */
+    static final List<String> FILTER_FIELDS = List.of("bookId");
+
+    private final Driver driver;
+    private final SearchProperties props;
+    private volatile Snapshot snapshot;
+
+    public SearchFilterIndex(Driver driver, SearchProperties props) {
+        this.driver = driver;
+        this.props = props;
+    }
+
+    /** Whether book ID clauses can be added to a {@code bookSearch} query. */
+    public boolean hasFullTextFilters() {
+        Snapshot current = snapshot;
+        return current != null && current.fullTextFilters;
+    }
+
+    /**
+     * The graph state a snapshot was read from: the loader's generation ({@code null} if no
+     * load has stamped the graph) and the number of SHELVED_AS relationships.
+     */
+    public record Stamp(String generation, long shelvings) {}
+
+    /**
+     * Books matched by a shelf filter, numbered by the snapshot they were read from, which
+     * was read at {@code stamp} ({@code null} if a load was running at the time).
+     */
+    public record ShelfBooks(BitSet books, String[] numbering, Stamp stamp) {
+
+        public int count() {
+            return books.cardinality();
+        }
+
+        public List<String> bookIds() {
+            List<String> bookIds = new ArrayList<>(count());
+            for (int book = books.nextSetBit(0); book >= 0; book = books.nextSetBit(book + 1)) {
+                bookIds.add(numbering[book]);
+            }
+            return bookIds;
+        }
+    }
+
+    /**
+     * The books on any of {@code shelves}. Returns {@code null} if the index has not been
+     * built yet.
+     */
+    public ShelfBooks shelfBooks(Collection<String> shelves) {
+        Snapshot current = snapshot;
+        if (current == null) return null;
+        BitSet books = new BitSet(current.bookIds.length);
+        for (String shelf : shelves) {
+            int[] postings = current.shelves.get(shelf);
+            if (postings == null) continue;
+            for (int book : postings) books.set(book);
+        }
+        return new ShelfBooks(books, current.bookIds, current.stamp);
+    }
+
+    /**
+     * Whether the graph is still at the stamp the snapshot {@code books} came from: no load
+     * has started or finished since, none is running, and the SHELVED_AS count is unchanged.
+     * One round trip reading a single node and the relationship count store.
+     */
+    public boolean isCurrent(ShelfBooks books) {
+        try (Session session = driver.session(SessionConfig.forDatabase("neo4j"))) {
+            Stamp now = stamp(session);
+            return now != null && now.equals(books.stamp());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${bookfinder.search.filter-index-initial-delay:PT0S}",
+               fixedDelayString = "${bookfinder.search.filter-index-refresh:PT30M}")
+    public void rebuild() {
+        if (!props.isFilterIndex()) return;
+        long start = System.currentTimeMillis();
+        try {
+            Snapshot built = load();
+            snapshot = built;
+            log.info("Search filter index rebuilt: {} books on {} shelves, full-text filters {} in {} ms",
+                    built.bookIds.length, built.shelves.size(), built.fullTextFilters ? "on" : "off",
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Search filter index rebuild failed, keeping the previous one: {}", e.getMessage());
+        }
+    }
+
+    private Snapshot load() {
+        Map<String, Integer> bookIndex = new HashMap<>();
+        List<String> bookIds = new ArrayList<>();
+        Map<String, int[]> postings = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        boolean fullTextFilters;
+        Stamp stamp;
+
+        try (Session session = driver.session(SessionConfig.forDatabase("neo4j"))) {
+            var indexResult = session.run("""
+                SHOW FULLTEXT INDEXES YIELD name, properties
+                WHERE name = 'bookSearch'
+                RETURN properties
+                """);
+            fullTextFilters = indexResult.hasNext()
+                    && indexResult.next().get("properties").asList(v -> v.asString()).containsAll(FILTER_FIELDS);
+            // Read before the scan, so a load starting during it makes the snapshot look stale
+            stamp = stamp(session);
+
+            var result = session.run("MATCH (b:Book)-[:SHELVED_AS]->(s:Shelf) RETURN s.name AS shelf, b.bookId AS bookId");
+            while (result.hasNext()) {
+                var record = result.next();
+                int book = bookIndex.computeIfAbsent(record.get("bookId").asString(), id -> {
+                    bookIds.add(id);
+                    return bookIds.size() - 1;
+                });
+                String shelf = record.get("shelf").asString();
+                int size = sizes.getOrDefault(shelf, 0);
+                int[] books = postings.computeIfAbsent(shelf, name -> new int[4]);
+                if (size == books.length) postings.put(shelf, books = Arrays.copyOf(books, size * 2));
+                books[size] = book;
+                sizes.put(shelf, size + 1);
+            }
+        }
+
+        Snapshot s = new Snapshot();
+        s.bookIds = bookIds.toArray(new String[0]);
+        s.fullTextFilters = fullTextFilters;
+        s.stamp = stamp;
+        s.shelves = new HashMap<>(postings.size() * 2);
+        for (var shelf : postings.entrySet()) {
+            int[] books = Arrays.copyOf(shelf.getValue(), sizes.get(shelf.getKey()));
+            Arrays.sort(books);
+            s.shelves.put(shelf.getKey(), books);
+        }
+        return s;
+    }
+
+    /** The graph's current stamp, or {@code null} while a load is running. */
+    private static Stamp stamp(Session session) {
+        var record = session.run("""
+            OPTIONAL MATCH (state:LoadState {key: 'graph'})
+            WITH state
+            CALL {
+                MATCH ()-[r:SHELVED_AS]->()
+                RETURN count(r) AS shelvings
+            }
+            RETURN state.generation AS generation, coalesce(state.loading, false) AS loading, shelvings
+            """).single();
+        if (record.get("loading").asBoolean()) return null;
+        return new Stamp(record.get("generation").asString(null), record.get("shelvings").asLong());
+    }
+
+    private static final class Snapshot {
+        private String[] bookIds;
+        private Map<String, int[]> shelves;
+        private boolean fullTextFilters;
+        private Stamp stamp;
+    }
+}
@@ -1,11 +1,13 @@
 package com.bookfinder.service;
 
+import com.bookfinder.config.SearchProperties;
 import com.bookfinder.dto.BookSearchResultDTO;
 import com.bookfinder.dto.PaginatedResponse;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Session;
 import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Value;
 import org.neo4j.driver.types.Node;
 import org.springframework.stereotype.Service;
 
@@ -14,16 +16,40 @@ import java.util.*;
 @Service
 public class SearchService {
 
+    /** The {@code bookSearch} fields free text is matched against. */
+    private static final List<String> TEXT_FIELDS = List.of("title", "titleClean", "description", "publisher");
+
     private final Driver driver;
+    private final CountCache counts;
+    private final SearchProperties props;
+    private final AutocompleteIndex autocompleteIndex;
+    private final SearchFilterIndex filterIndex;
 
-    public SearchService(Driver driver) {
+    public SearchService(Driver driver, CountCache counts, SearchProperties props,
+                         AutocompleteIndex autocompleteIndex, SearchFilterIndex filterIndex) {
         this.driver = driver;
+        this.counts = counts;
+        this.props = props;
+        this.autocompleteIndex = autocompleteIndex;
+        this.filterIndex = filterIndex;
     }
 
     public PaginatedResponse<BookSearchResultDTO> search(String query, int page, int size,
                                                           Double minRating, Integer minYear,
                                                           Integer maxYear, List<String> shelves,
                                                           String genre) {
+        return search(query, page, size, minRating, minYear, maxYear, shelves, genre, false);
+    }
+
+    /**
+     * @param estimateTotal collect matches only up to {@code bookfinder.search.estimate-cap}
+     *                      (or the end of the page, if further); the response then reports the
+     *                      total as inexact if that limit was hit
+     */
+    public PaginatedResponse<BookSearchResultDTO> search(String query, int page, int size,
+                                                          Double minRating, Integer minYear,
+                                                          Integer maxYear, List<String> shelves,
+                                                          String genre, boolean estimateTotal) {
         String luceneQuery = sanitizeLuceneQuery(query);
         if (luceneQuery.isBlank()) {
             return new PaginatedResponse<>(List.of(), page, size, 0);
@@ -31,9 +57,32 @@ public class SearchService {
 
         StringBuilder cypher = new StringBuilder();
         Map<String, Object> params = new HashMap<>();
+        boolean hasGenre = genre != null && !genre.isBlank();
+        boolean hasShelves = shelves != null && !shelves.isEmpty();
+
+        // A shelf filter goes into the full-text query when few enough books are on those
+        // shelves to list them, so books off the shelves are never read; otherwise it is
+        // checked per hit. Either shortcut relies on the shelf snapshot, so it is taken only
+        // once the snapshot is confirmed current. Genre is a BELONGS_TO check, since a book
+        // can be in several genres
+        boolean pushdown = filterIndex.hasFullTextFilters();
+        List<String> clauses = new ArrayList<>();
+        boolean shelvesPushed = false;
+        if (hasShelves) {
+            SearchFilterIndex.ShelfBooks onShelves = filterIndex.shelfBooks(shelves);
+            boolean empty = onShelves != null && onShelves.count() == 0;
+            boolean narrow = pushdown && onShelves != null && onShelves.count() <= props.getShelfPrefilterMax();
+            if ((empty || narrow) && filterIndex.isCurrent(onShelves)) {
+                if (empty) return new PaginatedResponse<>(List.of(), page, size, 0);
+                StringJoiner ids = new StringJoiner(" ", "bookId:(", ")");
+                for (String bookId : onShelves.bookIds()) ids.add("\"" + bookId + "\"");
+                clauses.add(ids.toString());
+                shelvesPushed = true;
+            }
+        }
 
         cypher.append("CALL db.index.fulltext.queryNodes('bookSearch', $query) YIELD node AS b, score\n");
-        params.put("query", luceneQuery);
+        params.put("query", fullTextQuery(luceneQuery, pushdown, clauses));
 
         List<String> filters = new ArrayList<>();
         if (minRating != null) {
@@ -48,57 +97,132 @@ public class SearchService {
             filters.add("b.pubYear <= $maxYear");
             params.put("maxYear", maxYear);
         }
-        if (genre != null && !genre.isBlank()) {
-            filters.add("b.genre = $genre");
+        if (hasGenre) {
+            filters.add("(b)-[:BELONGS_TO]->(:Genre {key: $genre})");
             params.put("genre", genre);
         }
-
-        if (shelves != null && !shelves.isEmpty()) {
-            cypher.append("MATCH (b)-[:SHELVED_AS]->(s:Shelf)\n");
-            cypher.append("WHERE s.name IN $shelves\n");
+        if (hasShelves && !shelvesPushed) {
+            filters.add("EXISTS { (b)-[:SHELVED_AS]->(s:Shelf) WHERE s.name IN $shelves }");
             params.put("shelves", shelves);
-            if (!filters.isEmpty()) {
-                cypher.append("AND ").append(String.join(" AND ", filters)).append("\n");
-            }
-        } else if (!filters.isEmpty()) {
+        }
+
+        if (!filters.isEmpty()) {
             cypher.append("WHERE ").append(String.join(" AND ", filters)).append("\n");
         }
 
-        // Count query
-        String countCypher = cypher + "RETURN count(DISTINCT b) AS cnt";
-        // Data query
-        String dataCypher = cypher + """
-                RETURN DISTINCT b, score
-                ORDER BY score DESC
+        // Once the total is cached only the page is read. An estimated total shares one full-text
+        // lookup with its page: the ranked hits are collected up to the window and both come from
+        // that list. An exact total is a separate count, so no request holds every hit in memory
+        String hits = cypher + """
+                WITH DISTINCT b, score
+                ORDER BY score DESC, b.bookId
+                """;
+        String pageCypher = hits + """
                 SKIP $skip LIMIT $limit
+                RETURN b, score
+                """;
+        String pageAndTotalCypher = hits + """
+                LIMIT $window
+                WITH collect({b: b, score: score}) AS hits
+                RETURN size(hits) AS total, hits[$skip..$skip + $limit] AS page
+                """;
+        String countCypher = cypher + """
+                WITH DISTINCT b
+                RETURN count(b) AS total
                 """;
 
-        params.put("skip", (long) page * size);
+        int cap = props.getEstimateCap();
+        String countKey = countKey(luceneQuery, minRating, minYear, maxYear, shelves, genre)
+                + (estimateTotal ? "|cap=" + cap : "");
+        long skip = (long) page * size;
+        long window = Math.max(cap, skip + size);
+        params.put("skip", skip);
         params.put("limit", size);
+        params.put("window", window);
 
         try (Session session = session()) {
-            long total = session.run(countCypher, params).single().get("cnt").asLong();
-
-            var result = session.run(dataCypher, params);
+            CountCache.Total total = counts.peek(countKey);
+            // A capped total only covers the window it was counted over; a page reaching past
+            // it is counted again over its own, wider window
+            if (total != null && !total.exact() && skip + size > total.value()) total = null;
+            if (total == null && !estimateTotal) {
+                total = new CountCache.Total(session.run(countCypher, params).single().get("total").asLong(), true);
+                counts.put(countKey, total);
+            }
             List<BookSearchResultDTO> books = new ArrayList<>();
-            while (result.hasNext()) {
-                Record rec = result.next();
-                Node node = rec.get("b").asNode();
-                BookSearchResultDTO dto = toSearchResult(node);
-                dto.setScore(rec.get("score").asDouble(0));
-                books.add(dto);
+            if (total != null) {
+                var result = session.run(pageCypher, params);
+                while (result.hasNext()) {
+                    Record rec = result.next();
+                    books.add(toSearchResult(rec.get("b").asNode(), rec.get("score")));
+                }
+            } else {
+                Record rec = session.run(pageAndTotalCypher, params).single();
+                long matched = rec.get("total").asLong();
+                // A full window means there may be more matches than were collected
+                total = new CountCache.Total(matched, matched < window);
+                counts.put(countKey, total);
+                for (Value hit : rec.get("page").values()) {
+                    books.add(toSearchResult(hit.get("b").asNode(), hit.get("score")));
+                }
             }
             books = DeduplicationUtil.deduplicateBooks(books);
-            return new PaginatedResponse<>(books, page, size, total);
+            PaginatedResponse<BookSearchResultDTO> response = new PaginatedResponse<>(books, page, size, total.value());
+            response.setTotalExact(total.exact());
+            return response;
+        }
+    }
+
+    /**
+     * The Lucene query for {@code luceneQuery} plus required filter {@code clauses}. With
+     * filter fields in the index the text is scoped to the text fields, so a search for a
+     * number does not match book IDs; the filters are boosted to 0 so
+     * they narrow the hits without changing their scores.
+     */
+    private static String fullTextQuery(String luceneQuery, boolean filterFields, List<String> clauses) {
+        if (!filterFields) return luceneQuery;
+        StringBuilder query = new StringBuilder("+(");
+        for (String field : TEXT_FIELDS) {
+            if (query.length() > 2) query.append(' ');
+            query.append(field).append(":(").append(luceneQuery).append(')');
         }
+        query.append(')');
+        for (String clause : clauses) query.append(" +").append(clause).append("^0");
+        return query.toString();
+    }
+
+    private BookSearchResultDTO toSearchResult(Node node, Value score) {
+        BookSearchResultDTO dto = toSearchResult(node);
+        dto.setScore(score.asDouble(0));
+        return dto;
     }
 
+    /** Cache key for a search's total; case and spacing do not change what the analyzer matches. */
+    private static String countKey(String luceneQuery, Double minRating, Integer minYear, Integer maxYear,
+                                   List<String> shelves, String genre) {
+        String shelfKey = shelves == null ? "" : String.join(",", new TreeSet<>(shelves));
+        return "search|" + luceneQuery.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ")
+                + "|" + Objects.toString(minRating, "") + "|" + Objects.toString(minYear, "")
+                + "|" + Objects.toString(maxYear, "") + "|" + shelfKey
+                + "|" + (genre == null || genre.isBlank() ? "" : genre);
+    }
+
+    /**
+     * Books whose title or author has a word starting with {@code query}, most rated first,
+     * answered from {@link AutocompleteIndex}. Until the index is built this falls back to a
+     * wildcard full-text query ranked by relevance.
+     */
     public List<BookSearchResultDTO> autocomplete(String query, int limit) {
+        if (props.isAutocompleteIndex()) {
+            List<BookSearchResultDTO> completions = autocompleteIndex.complete(query, limit);
+            if (completions != null) return completions;
+        }
+
         String luceneQuery = sanitizeLuceneQuery(query);
         if (luceneQuery.isBlank()) return List.of();
 
         // Add wildcard for partial matching
-        String wildcardQuery = luceneQuery + "*";
+        String wildcardQuery = fullTextQuery(luceneQuery + "*", filterIndex.hasFullTextFilters(), List.of());
 
         try (Session session = session()) {
             var result = session.run("""
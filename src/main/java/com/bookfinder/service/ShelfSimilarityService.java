@@ -0,0 +1,184 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.RecommendationProperties;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Materializes each book's nearest neighbours by shelf overlap as
+ * {@code (:Book)-[:SHELF_SIMILAR {score, shared}]->(:Book)} relationships, so the shelf
+ * strategy and the recommendation graph read a handful of edges instead of expanding
+ * {@code Book-SHELVED_AS->Shelf<-SHELVED_AS-Book} through popular shelves per request.
+ *
+ * Neighbours are found with {@link MinHashLsh} and scored with their exact Jaccard
+ * similarity. The index is rebuilt by the data loader and on demand through
+ * {@link #refreshAsync()}; until it has been built, readers fall back to counting shared
+ * shelves live.
+ */
+@Service
+public class ShelfSimilarityService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShelfSimilarityService.class);
+
+    // 32 bands of 2 rows: pairs above a Jaccard of about 0.18 become candidates
+    private static final int BANDS = 32;
+    private static final int ROWS = 2;
+    private static final int MAX_BUCKET = 2000;
+    private static final long SEED = 0x5EED5EEDL;
+    private static final int WRITE_BATCH = 1000;
+    private static final String GENERATION_INDEX =
+            "CREATE INDEX shelf_similar_generation IF NOT EXISTS FOR ()-[r:SHELF_SIMILAR]-() ON (r.generation)";
+
+    public record Status(boolean running, String refreshedAt, int books, long relationships,
+                         long durationMs, String error) {}
+
+    private final Driver driver;
+    private final RecommendationProperties props;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Status status = new Status(false, null, 0, 0, 0, null);
+
+    public ShelfSimilarityService(Driver driver, RecommendationProperties props) {
+        this.driver = driver;
+        this.props = props;
+    }
+
+    public Status status() {
+        Status last = status;
+        return new Status(running.get(), last.refreshedAt(), last.books(), last.relationships(),
+                last.durationMs(), last.error());
+    }
+
+    /**
+     * Starts a rebuild in the background unless one is already running, and returns the
+     * status at that point.
+     */
+    public Status refreshAsync() {
+        if (running.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("shelf-similarity-refresh").start(() -> {
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    log.error("Shelf similarity refresh failed", e);
+                    status = new Status(false, status.refreshedAt(), status.books(), status.relationships(),
+                            status.durationMs(), e.getMessage());
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+        return status();
+    }
+
+    /**
+     * Rebuilds the index and waits for it. Fails if a background refresh is running.
+     */
+    public Status refresh() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A shelf similarity refresh is already running");
+        }
+        try {
+            rebuild();
+            return status();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        log.info("Rebuilding shelf similarity index (top {} per book)...", props.getShelfNeighbours());
+
+        Map<String, Integer> bookIndex = new HashMap<>();
+        List<String> bookIds = new ArrayList<>();
+        Map<String, Integer> shelfIndex = new HashMap<>();
+        List<int[]> shelves = new ArrayList<>();
+        int[] sizes = new int[1024];
+        try (Session session = session()) {
+            var result = session.run("MATCH (b:Book)-[:SHELVED_AS]->(s:Shelf) RETURN b.bookId AS bookId, s.name AS shelf");
+            while (result.hasNext()) {
+                var record = result.next();
+                int book = bookIndex.computeIfAbsent(record.get("bookId").asString(), id -> {
+                    bookIds.add(id);
+                    shelves.add(new int[4]);
+                    return bookIds.size() - 1;
+                });
+                int shelf = shelfIndex.computeIfAbsent(record.get("shelf").asString(), name -> shelfIndex.size());
+                if (book == sizes.length) sizes = Arrays.copyOf(sizes, sizes.length * 2);
+                int[] set = shelves.get(book);
+                if (sizes[book] == set.length) shelves.set(book, set = Arrays.copyOf(set, set.length * 2));
+                set[sizes[book]++] = shelf;
+            }
+        }
+
+        int[][] sets = new int[bookIds.size()][];
+        for (int i = 0; i < sets.length; i++) {
+            sets[i] = Arrays.copyOf(shelves.get(i), sizes[i]);
+            Arrays.sort(sets[i]);
+        }
+        log.info("  {} books over {} shelves", sets.length, shelfIndex.size());
+
+        MinHashLsh.Neighbour[][] neighbours = new MinHashLsh(BANDS, ROWS, MAX_BUCKET, SEED)
+                .neighbours(sets, props.getShelfNeighbours(), props.getShelfMinShared());
+
+        // The new edges go in under a fresh generation and the older ones are deleted only once
+        // they are all written, so readers never see a book without neighbours mid-rebuild and a
+        // failed rebuild leaves the previous index in place
+        long generation = System.currentTimeMillis();
+        long written = 0;
+        try (Session session = session()) {
+            session.run(GENERATION_INDEX).consume();
+
+            List<Map<String, Object>> batch = new ArrayList<>(WRITE_BATCH);
+            for (int i = 0; i < neighbours.length; i++) {
+                for (MinHashLsh.Neighbour neighbour : neighbours[i]) {
+                    batch.add(Map.of("bookId", bookIds.get(i), "similarBookId", bookIds.get(neighbour.set()),
+                            "score", neighbour.jaccard(), "shared", neighbour.shared()));
+                    if (batch.size() == WRITE_BATCH) {
+                        written += write(session, batch, generation);
+                        batch = new ArrayList<>(WRITE_BATCH);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) written += write(session, batch, generation);
+
+            for (String older : List.of("r.generation < $generation", "r.generation IS NULL")) {
+                long deleted = 1;
+                while (deleted > 0) {
+                    deleted = session.run("""
+                        MATCH ()-[r:SHELF_SIMILAR]->()
+                        WHERE %s
+                        WITH r LIMIT 10000
+                        DELETE r
+                        RETURN count(r) AS cnt
+                        """.formatted(older), Map.of("generation", generation)).single().get("cnt").asLong();
+                }
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        status = new Status(false, Instant.now().toString(), sets.length, written, elapsed, null);
+        log.info("Shelf similarity index rebuilt: {} SHELF_SIMILAR relationships in {} ms", written, elapsed);
+    }
+
+    private int write(Session session, List<Map<String, Object>> batch, long generation) {
+        session.executeWrite(tx -> tx.run("""
+            UNWIND $batch AS s
+            MATCH (b1:Book {bookId: s.bookId})
+            MATCH (b2:Book {bookId: s.similarBookId})
+            CREATE (b1)-[:SHELF_SIMILAR {score: s.score, shared: s.shared, generation: $generation}]->(b2)
+            """, Map.of("batch", batch, "generation", generation)).consume());
+        return batch.size();
+    }
+
+    private Session session() {
+        return driver.session(SessionConfig.forDatabase("neo4j"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.bookfinder.loader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookOffsetIndexTest {
+
+    /** The largest book ID that packs next to a 37-bit position. */
+    private static final long MAX_BOOK_ID = (1L << 26) - 1;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void positionsForReturnsEachBooksLinesInFileOrder() throws IOException {
+        Path data = dir.resolve("interactions.json");
+        String[] books = {"7", "42", "7", "1000", String.valueOf(MAX_BOOK_ID), "42", "7"};
+        long[] positions = write(data, books);
+        Path stateDir = dir.resolve("state");
+
+        BookOffsetIndex index = BookOffsetIndex.openOrBuild(data.toString(), stateDir, 2);
+
+        assertNotNull(index);
+        assertTrue(Files.exists(stateDir.resolve("interactions.json.bookidx")));
+        assertEquals(books.length, index.size());
+        assertArrayEquals(new long[] {positions[0], positions[2], positions[6]}, index.positionsFor(Set.of("7")));
+        assertArrayEquals(new long[] {positions[0], positions[1], positions[2], positions[5], positions[6]},
+                index.positionsFor(List.of("42", "7")));
+        assertArrayEquals(new long[] {positions[4]}, index.positionsFor(Set.of(String.valueOf(MAX_BOOK_ID))));
+        assertArrayEquals(new long[0], index.positionsFor(Set.of("8", "not-a-number", "007")));
+    }
+
+    @Test
+    void changedDataFileIsReindexed() throws IOException {
+        Path data = dir.resolve("reviews.json");
+        write(data, new String[] {"1", "2"});
+        assertEquals(2, BookOffsetIndex.openOrBuild(data.toString(), dir, 1).size());
+
+        long[] positions = write(data, new String[] {"2", "1", "2"});
+        Files.setLastModifiedTime(data, FileTime.fromMillis(Files.getLastModifiedTime(data).toMillis() + 2000));
+        BookOffsetIndex index = BookOffsetIndex.openOrBuild(data.toString(), dir, 1);
+
+        assertEquals(3, index.size());
+        assertArrayEquals(new long[] {positions[0], positions[2]}, index.positionsFor(Set.of("2")));
+    }
+
+    @Test
+    void unpackableBookIdFallsBackToScanning() throws IOException {
+        Path data = dir.resolve("interactions.json");
+        write(data, new String[] {"1", String.valueOf(MAX_BOOK_ID + 1)});
+        assertNull(BookOffsetIndex.openOrBuild(data.toString(), dir, 1));
+
+        write(data, new String[] {"1", "0042"});
+        assertNull(BookOffsetIndex.openOrBuild(data.toString(), dir, 1));
+    }
+
+    /** Writes one line per book ID and returns the position of each line. */
+    private static long[] write(Path data, String[] bookIds) throws IOException {
+        StringBuilder text = new StringBuilder();
+        List<Long> positions = new ArrayList<>();
+        for (int i = 0; i < bookIds.length; i++) {
+            positions.add((long) text.length());
+            text.append("{\"user_id\":\"u").append(i).append("\",\"book_id\":\"").append(bookIds[i])
+                    .append("\",\"rating\":").append(i % 5).append("}\n");
+        }
+        Files.writeString(data, text);
+        return positions.stream().mapToLong(Long::longValue).toArray();
+    }
+}
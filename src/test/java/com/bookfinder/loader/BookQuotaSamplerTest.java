@@ -0,0 +1,72 @@
+package com.bookfinder.loader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookQuotaSamplerTest {
+
+    /** A line of the file: which book it belongs to and where it starts. */
+    private record Row(String bookId, long position) {}
+
+    @Test
+    void budgetIsSpreadEvenlyOverBooks() {
+        // One book fills the head of the file, nine have 500 rows each, two only 3
+        List<Row> rows = new ArrayList<>();
+        add(rows, "head", 10000);
+        for (int b = 0; b < 9; b++) add(rows, "book" + b, 500);
+        add(rows, "small0", 3);
+        add(rows, "small1", 3);
+
+        List<Row> sampled = sample(rows, 1000, 12);
+
+        assertEquals(1000, sampled.size());
+        Map<String, Long> perBook = sampled.stream().collect(Collectors.groupingBy(Row::bookId, Collectors.counting()));
+        assertEquals(3, perBook.get("small0"));
+        assertEquals(3, perBook.get("small1"));
+        // The other 994 rows are split as evenly as the ranks allow: 99 or 100 each
+        for (String book : perBook.keySet()) {
+            if (book.startsWith("small")) continue;
+            assertTrue(perBook.get(book) == 99 || perBook.get(book) == 100, book + ": " + perBook.get(book));
+        }
+    }
+
+    @Test
+    void sampleIsInFileOrderAndRepeatable() {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) rows.add(new Row("book" + i % 7, i * 80L));
+
+        List<Row> first = sample(rows, 300, 7);
+        List<Row> second = sample(rows, 300, 7);
+
+        assertEquals(first, second);
+        for (int i = 1; i < first.size(); i++) {
+            assertTrue(first.get(i - 1).position() < first.get(i).position());
+        }
+    }
+
+    @Test
+    void everythingIsKeptUnderBudget() {
+        List<Row> rows = new ArrayList<>();
+        add(rows, "a", 5);
+        add(rows, "b", 2);
+
+        assertEquals(rows, sample(rows, 100, 2));
+        assertEquals(List.of(), sample(rows, 0, 2));
+    }
+
+    private static List<Row> sample(List<Row> rows, int budget, int books) {
+        return BookQuotaSampler.sample(rows.iterator(), Row::bookId, Row::position, budget, books);
+    }
+
+    private static void add(List<Row> rows, String bookId, int count) {
+        long position = rows.isEmpty() ? 0 : rows.get(rows.size() - 1).position() + 100;
+        for (int i = 0; i < count; i++) rows.add(new Row(bookId, position + i * 100L));
+    }
+}
@@ -0,0 +1,137 @@
+package com.bookfinder.loader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonLineReaderTest {
+
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void lineCrossingChunkBoundaryIsReadOnce() throws IOException {
+        // A 100 KB line starting 1 KB before the first chunk boundary
+        List<String> lines = new ArrayList<>();
+        long size = fillTo(lines, CHUNK_SIZE - 1024);
+        String straddling = line(lines.size(), 100 * 1024);
+        lines.add(straddling);
+        assertTrue(size < CHUNK_SIZE && size + straddling.length() > CHUNK_SIZE);
+        fillTo(lines, size + straddling.length() + 1, 2L * CHUNK_SIZE + 4096);
+        Path file = write(lines);
+
+        for (int parallelism : new int[] {1, 4}) {
+            try (JsonLineReader reader = new JsonLineReader(file.toString(), parallelism, true)) {
+                List<String> read = reader.stream(JsonLineReaderTest::text).collect(Collectors.toList());
+                assertEquals(lines, read);
+                assertEquals(lines.size(), reader.linesScanned());
+            }
+        }
+    }
+
+    @Test
+    void lineStartingExactlyAtChunkBoundaryIsReadOnce() throws IOException {
+        List<String> lines = new ArrayList<>();
+        long size = fillTo(lines, CHUNK_SIZE - 200);
+        // Pad the last line before the boundary so the next one starts right on it
+        String padded = line(lines.size(), (int) (CHUNK_SIZE - size - 1));
+        lines.add(padded);
+        assertEquals(CHUNK_SIZE, size + padded.length() + 1);
+        lines.add(line(lines.size(), 50));
+        lines.add(line(lines.size(), 50));
+        Path file = write(lines);
+
+        try (JsonLineReader reader = new JsonLineReader(file.toString(), 2, true)) {
+            assertEquals(lines, reader.stream(JsonLineReaderTest::text).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void crlfAndBlankLinesAreSkipped() throws IOException {
+        Path file = dir.resolve("crlf.json");
+        Files.writeString(file, "{\"a\":1}\r\n\r\n\n{\"a\":2}\r\n{\"a\":3}");
+
+        try (JsonLineReader reader = new JsonLineReader(file.toString())) {
+            assertEquals(List.of("{\"a\":1}", "{\"a\":2}", "{\"a\":3}"),
+                    reader.stream(JsonLineReaderTest::text).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void streamAtReadsOnlyTheGivenLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        long size = fillTo(lines, CHUNK_SIZE - 1024);
+        String straddling = line(lines.size(), 100 * 1024);
+        lines.add(straddling);
+        fillTo(lines, size + straddling.length() + 1, 3L * CHUNK_SIZE);
+        Path file = write(lines);
+
+        long[] all;
+        try (JsonLineReader reader = new JsonLineReader(file.toString())) {
+            all = reader.streamWithPositions((position, buf, offset, length) -> position)
+                    .mapToLong(Long::longValue).toArray();
+        }
+        assertEquals(lines.size(), all.length);
+
+        // Dense near the start (coalesced reads), the straddling line, then sparse picks
+        // more than a chunk apart (one read each)
+        int straddlingIndex = lines.indexOf(straddling);
+        List<Integer> picked = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i < 200 ? i % 3 == 0 : i == straddlingIndex || i % 5000 == 0 || i == lines.size() - 1) {
+                picked.add(i);
+            }
+        }
+        long[] positions = picked.stream().mapToLong(i -> all[i]).toArray();
+        List<String> expected = picked.stream().map(lines::get).collect(Collectors.toList());
+
+        for (int parallelism : new int[] {1, 4}) {
+            try (JsonLineReader reader = new JsonLineReader(file.toString(), parallelism, true)) {
+                assertEquals(expected, reader.streamAt(positions, JsonLineReaderTest::text)
+                        .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    private static String text(byte[] buf, int offset, int length) {
+        return new String(buf, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /** A JSON line of exactly {@code length} bytes. */
+    static String line(int i, int length) {
+        String head = "{\"i\":" + i + ",\"pad\":\"";
+        return head + "x".repeat(length - head.length() - 2) + "\"}";
+    }
+
+    /** Appends lines of varying length until the next line would start at or after {@code target}. */
+    private static long fillTo(List<String> lines, long target) {
+        return fillTo(lines, 0, target);
+    }
+
+    private static long fillTo(List<String> lines, long size, long target) {
+        while (size < target - 2000) {
+            String next = line(lines.size(), 40 + (lines.size() * 37) % 900);
+            lines.add(next);
+            size += next.length() + 1;
+        }
+        return size;
+    }
+
+    private Path write(List<String> lines) throws IOException {
+        Path file = dir.resolve("lines.json");
+        Files.writeString(file, String.join("\n", lines) + "\n");
+        return file;
+    }
+}
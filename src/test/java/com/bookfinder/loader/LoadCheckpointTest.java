@@ -0,0 +1,73 @@
+package com.bookfinder.loader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadCheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void resumeOffsetAdvancesOnlyOverContiguousCommits() {
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(dir.resolve("checkpoint.json"), "config");
+        LoadCheckpoint.Progress progress = checkpoint.progress(checkpoint.genre("fantasy"), "interactions");
+
+        long first = progress.submitted(99, 10);
+        long second = progress.submitted(199, 20);
+        long third = progress.submitted(299, 30);
+
+        progress.committed(third);
+        progress.committed(second);
+        assertEquals(0, progress.resumeOffset());
+        assertEquals(0, progress.loaded());
+
+        progress.committed(first);
+        assertEquals(300, progress.resumeOffset());
+        assertEquals(30, progress.loaded());
+    }
+
+    @Test
+    void reopeningWithTheSameConfigResumes() {
+        Path file = dir.resolve("checkpoint.json");
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(file, "config");
+        LoadCheckpoint.GenreState genre = checkpoint.genre("fantasy");
+        LoadCheckpoint.Progress progress = checkpoint.progress(genre, "reviews");
+        progress.committed(progress.submitted(499, 50));
+        checkpoint.advance(genre, LoadCheckpoint.Phase.REVIEWS);
+
+        LoadCheckpoint resumed = LoadCheckpoint.open(file, "config");
+        assertTrue(resumed.isResumed());
+        LoadCheckpoint.GenreState resumedGenre = resumed.genre("fantasy");
+        assertEquals(LoadCheckpoint.Phase.REVIEWS, resumedGenre.phase);
+        LoadCheckpoint.Progress resumedProgress = resumed.progress(resumedGenre, "reviews");
+        assertEquals(500, resumedProgress.resumeOffset());
+        assertEquals(50, resumedProgress.loaded());
+
+        // Sequences restart with the new attempt
+        resumedProgress.committed(resumedProgress.submitted(899, 90));
+        assertEquals(900, resumedProgress.resumeOffset());
+    }
+
+    @Test
+    void checkpointForAnotherConfigIsDiscarded() throws IOException {
+        Path file = dir.resolve("checkpoint.json");
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(file, "config");
+        checkpoint.authorsDone();
+
+        LoadCheckpoint other = LoadCheckpoint.open(file, "other config");
+        assertFalse(other.isResumed());
+        assertFalse(other.isAuthorsDone());
+
+        checkpoint.complete();
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,75 @@
+package com.bookfinder.loader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TopKHeapTest {
+
+    @Test
+    void keepsHighestScores() {
+        TopKHeap heap = new TopKHeap(3);
+        long[] scores = {5, 1, 9, 7, 3, 8};
+        for (int i = 0; i < scores.length; i++) heap.offer(scores[i], i, i * 100L);
+
+        assertEquals(Set.of(2L, 3L, 5L), ids(heap));
+        assertEquals(7, heap.minScore());
+        for (int i = 0; i < heap.size(); i++) assertEquals(heap.id(i) * 100, heap.position(i));
+    }
+
+    @Test
+    void tiesGoToSmallerIdsWhateverTheOrder() {
+        List<long[]> entries = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) entries.add(new long[] {id <= 2 ? 50 : 10, id});
+        Random random = new Random(1);
+
+        for (int round = 0; round < 20; round++) {
+            Collections.shuffle(entries, random);
+            TopKHeap heap = new TopKHeap(5);
+            for (long[] entry : entries) heap.offer(entry[0], entry[1], 0);
+            // Both 50s, then the three smallest IDs among the 10s
+            assertEquals(Set.of(1L, 2L, 3L, 4L, 5L), ids(heap));
+        }
+    }
+
+    @Test
+    void mergedChunkHeapsMatchOneHeap() {
+        Random random = new Random(3);
+        TopKHeap single = new TopKHeap(50);
+        List<TopKHeap> chunks = new ArrayList<>();
+        for (int c = 0; c < 8; c++) chunks.add(new TopKHeap(50));
+        for (long id = 0; id < 5000; id++) {
+            long score = random.nextInt(100);
+            single.offer(score, id, id);
+            chunks.get(random.nextInt(chunks.size())).offer(score, id, id);
+        }
+
+        TopKHeap merged = new TopKHeap(50);
+        Collections.shuffle(chunks, random);
+        for (TopKHeap chunk : chunks) merged.addAll(chunk);
+
+        assertEquals(ids(single), ids(merged));
+        assertEquals(single.minScore(), merged.minScore());
+    }
+
+    @Test
+    void zeroCapacityKeepsNothing() {
+        TopKHeap heap = new TopKHeap(0);
+        heap.offer(10, 1, 0);
+        assertEquals(0, heap.size());
+        assertEquals(0, heap.minScore());
+    }
+
+    private static Set<Long> ids(TopKHeap heap) {
+        Set<Long> ids = new TreeSet<>();
+        for (int i = 0; i < heap.size(); i++) ids.add(heap.id(i));
+        return ids;
+    }
+}
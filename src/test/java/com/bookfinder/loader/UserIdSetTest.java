@@ -0,0 +1,42 @@
+package com.bookfinder.loader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserIdSetTest {
+
+    @Test
+    void matchesHashSetAcrossGrowth() {
+        Random random = new Random(7);
+        UserIdSet ids = new UserIdSet(4);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            String id = String.format("%016x%016x", random.nextLong() & 0xfff, random.nextLong() & 0xf);
+            assertEquals(expected.add(id), ids.add(id), id);
+        }
+        assertEquals(expected.size(), ids.size());
+    }
+
+    @Test
+    void allZeroAndNonHexIdsAreKept() {
+        UserIdSet ids = new UserIdSet();
+        String zero = "0".repeat(32);
+        assertTrue(ids.add(zero));
+        assertFalse(ids.add(zero));
+
+        // Uppercase, short and long IDs are not folded onto their hex value
+        assertTrue(ids.add("8842281E1D1347389F2AB93D60773D4D"));
+        assertTrue(ids.add("8842281e1d1347389f2ab93d60773d4d"));
+        assertTrue(ids.add("42"));
+        assertTrue(ids.add("8842281e1d1347389f2ab93d60773d4d0"));
+        assertFalse(ids.add("42"));
+        assertEquals(5, ids.size());
+    }
+}
@@ -0,0 +1,112 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.SearchProperties;
+import com.bookfinder.dto.BookSearchResultDTO;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Values;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AutocompleteIndexTest {
+
+    @Test
+    void normalize() {
+        assertEquals("les miserables tome i", AutocompleteIndex.normalize("  Les Misérables: Tome I "));
+        assertEquals("harry potter the chamber", AutocompleteIndex.normalize("Harry-Potter & the...Chamber"));
+        assertEquals("", AutocompleteIndex.normalize("?!"));
+        assertEquals("", AutocompleteIndex.normalize(null));
+    }
+
+    @Test
+    void matchesWordStartsMostRatedFirst() {
+        List<Record> books = List.of(
+                book("1", "The Hunger Games", 100),
+                book("2", "Catching Fire", 200),
+                book("3", "Hunger", 50),
+                book("4", "A Game of Thrones", 300));
+        List<Record> authors = List.of(
+                author("Suzanne Collins", "1"),
+                author("Suzanne Collins", "2"),
+                author("George R. R. Martin", "4"));
+        AutocompleteIndex index = index(books, authors);
+        assertNull(index.complete("hunger", 10));
+
+        index.rebuild();
+
+        assertEquals(List.of("1"), bookIds(index.complete("hunger ga", 10)));
+        assertEquals(List.of("4", "1"), bookIds(index.complete("GA", 10)));
+        assertEquals(List.of("1", "3"), bookIds(index.complete("Hün", 10)));
+        assertEquals(List.of("2", "1"), bookIds(index.complete("collins", 10)));
+        assertEquals(List.of("2"), bookIds(index.complete("suzanne", 1)));
+        assertEquals(List.of(), bookIds(index.complete("hungry", 10)));
+        assertEquals(List.of(), bookIds(index.complete("  ", 10)));
+    }
+
+    @Test
+    void largeRangesAreRankedAcrossTheWholeRange() {
+        List<Record> books = new ArrayList<>();
+        for (int i = 0; i < 600; i++) books.add(book(String.valueOf(i), "Book " + i, (i * 7919) % 600));
+        AutocompleteIndex index = index(books, List.of());
+        index.rebuild();
+
+        List<BookSearchResultDTO> top = index.complete("b", 5);
+        assertEquals(List.of(599, 598, 597, 596, 595),
+                top.stream().map(BookSearchResultDTO::getRatingsCount).toList());
+        // Served from the cached ranking the second time, and a longer list beyond it
+        assertEquals(bookIds(top), bookIds(index.complete("b", 5)));
+        assertEquals(60, index.complete("book", 60).size());
+    }
+
+    private static AutocompleteIndex index(List<Record> books, List<Record> authors) {
+        Session session = mock(Session.class);
+        when(session.run(anyString())).thenAnswer(invocation -> {
+            String cypher = invocation.getArgument(0);
+            return result(cypher.contains(":WROTE") ? authors : books);
+        });
+        Driver driver = mock(Driver.class);
+        when(driver.session(any(SessionConfig.class))).thenReturn(session);
+        return new AutocompleteIndex(driver, new SearchProperties());
+    }
+
+    private static Result result(List<Record> records) {
+        Iterator<Record> it = records.iterator();
+        Result result = mock(Result.class);
+        when(result.hasNext()).thenAnswer(invocation -> it.hasNext());
+        when(result.next()).thenAnswer(invocation -> it.next());
+        return result;
+    }
+
+    private static Record book(String bookId, String title, int ratingsCount) {
+        Record record = mock(Record.class);
+        when(record.get("bookId")).thenReturn(Values.value(bookId));
+        when(record.get("props")).thenReturn(Values.value(Map.of(
+                "title", title, "titleClean", title, "ratingsCount", ratingsCount)));
+        return record;
+    }
+
+    private static Record author(String name, String bookId) {
+        Record record = mock(Record.class);
+        when(record.get("name")).thenReturn(Values.value(name));
+        when(record.get("bookId")).thenReturn(Values.value(bookId));
+        return record;
+    }
+
+    private static List<String> bookIds(List<BookSearchResultDTO> books) {
+        return books.stream().map(BookSearchResultDTO::getBookId).toList();
+    }
+}
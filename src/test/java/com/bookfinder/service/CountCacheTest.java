@@ -0,0 +1,56 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.SearchProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CountCacheTest {
+
+    @Test
+    void countsOnceWhileCached() {
+        CountCache cache = new CountCache(new SearchProperties());
+        AtomicInteger counted = new AtomicInteger();
+
+        assertEquals(42, cache.exact("books", () -> 42L + counted.getAndIncrement()));
+        assertEquals(42, cache.exact("books", () -> 42L + counted.getAndIncrement()));
+        assertEquals(1, counted.get());
+        assertEquals(new CountCache.Total(42, true), cache.peek("books"));
+
+        cache.invalidate();
+        assertNull(cache.peek("books"));
+    }
+
+    @Test
+    void expiredEntriesAreCountedAgain() {
+        SearchProperties props = new SearchProperties();
+        props.setCountCacheTtl(Duration.ZERO);
+        CountCache cache = new CountCache(props);
+        AtomicLong counted = new AtomicLong();
+
+        cache.exact("books", counted::incrementAndGet);
+        assertNull(cache.peek("books"));
+        cache.exact("books", counted::incrementAndGet);
+        assertEquals(2, counted.get());
+    }
+
+    @Test
+    void fullCacheStartsOver() {
+        SearchProperties props = new SearchProperties();
+        props.setCountCacheSize(2);
+        CountCache cache = new CountCache(props);
+
+        cache.put("a", new CountCache.Total(1, true));
+        cache.put("b", new CountCache.Total(2, false));
+        cache.put("c", new CountCache.Total(3, true));
+
+        assertNull(cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertEquals(new CountCache.Total(3, true), cache.peek("c"));
+    }
+}
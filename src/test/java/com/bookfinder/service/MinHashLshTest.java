@@ -0,0 +1,87 @@
+package com.bookfinder.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinHashLshTest {
+
+    private final MinHashLsh lsh = new MinHashLsh(32, 2, 2000, 0x5EED5EEDL);
+
+    @Test
+    void findsNearDuplicatesBestFirst() {
+        // Clusters of three: a set, a copy with two elements replaced and a copy with three added
+        Random random = new Random(11);
+        int clusters = 20;
+        int[][] sets = new int[clusters * 3][];
+        for (int c = 0; c < clusters; c++) {
+            TreeSet<Integer> base = randomSet(random, 30);
+            TreeSet<Integer> replaced = new TreeSet<>(base);
+            replaced.pollFirst();
+            replaced.pollLast();
+            replaced.addAll(randomSet(random, 2));
+            TreeSet<Integer> added = new TreeSet<>(base);
+            added.addAll(randomSet(random, 3));
+            sets[3 * c] = toArray(base);
+            sets[3 * c + 1] = toArray(replaced);
+            sets[3 * c + 2] = toArray(added);
+        }
+
+        MinHashLsh.Neighbour[][] neighbours = lsh.neighbours(sets, 5, 2);
+
+        for (int i = 0; i < sets.length; i++) {
+            int cluster = i / 3;
+            assertEquals(2, neighbours[i].length, "set " + i);
+            for (MinHashLsh.Neighbour neighbour : neighbours[i]) {
+                assertEquals(cluster, neighbour.set() / 3);
+                int shared = intersection(sets[i], sets[neighbour.set()]);
+                assertEquals(shared, neighbour.shared());
+                assertEquals((double) shared / (sets[i].length + sets[neighbour.set()].length - shared),
+                        neighbour.jaccard(), 1e-12);
+            }
+            assertTrue(neighbours[i][0].jaccard() >= neighbours[i][1].jaccard());
+        }
+    }
+
+    @Test
+    void respectsTopNAndMinShared() {
+        int[] base = new int[20];
+        Arrays.setAll(base, i -> i * 3);
+        int[][] sets = {
+                base,
+                Arrays.copyOf(base, 19),
+                Arrays.copyOf(base, 18),
+                Arrays.copyOf(base, 17),
+                {0, 3, 1000},
+                {},
+        };
+
+        MinHashLsh.Neighbour[][] neighbours = lsh.neighbours(sets, 2, 3);
+
+        assertEquals(2, neighbours[0].length);
+        assertEquals(1, neighbours[0][0].set());
+        assertEquals(2, neighbours[0][1].set());
+        // Shares only two elements with the others
+        assertEquals(0, neighbours[4].length);
+        assertEquals(0, neighbours[5].length);
+    }
+
+    private static TreeSet<Integer> randomSet(Random random, int size) {
+        TreeSet<Integer> set = new TreeSet<>();
+        while (set.size() < size) set.add(random.nextInt(1_000_000));
+        return set;
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        return set.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int intersection(int[] a, int[] b) {
+        return (int) Arrays.stream(a).filter(x -> Arrays.binarySearch(b, x) >= 0).count();
+    }
+}
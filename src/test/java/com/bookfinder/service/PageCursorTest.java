@@ -0,0 +1,86 @@
+package com.bookfinder.service;
+
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Values;
+import org.neo4j.driver.types.Node;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PageCursorTest {
+
+    @Test
+    void titleWithNewlineRoundTrips() {
+        String title = "The Book\nof Lines\n";
+        String cursor = PageCursor.after(book("123", "title", title), "title", "ASC");
+
+        Map<String, Object> params = new HashMap<>();
+        PageCursor.decode(cursor, "title", "ASC").addParams(params);
+
+        assertEquals(Map.of("after", title, "afterId", "123"), params);
+    }
+
+    @Test
+    void numericValuesKeepTheirType() {
+        Map<String, Object> params = new HashMap<>();
+        PageCursor.decode(PageCursor.after(book("7", "ratingsCount", 1500L), "ratingsCount", "DESC"),
+                "ratingsCount", "DESC").addParams(params);
+        assertEquals(1500L, params.get("after"));
+
+        PageCursor.decode(PageCursor.after(book("7", "averageRating", 4.25), "averageRating", "DESC"),
+                "averageRating", "DESC").addParams(params);
+        assertEquals(4.25, params.get("after"));
+        assertEquals("7", params.get("afterId"));
+    }
+
+    @Test
+    void cursorIsUrlSafe() {
+        String cursor = PageCursor.after(book("1", "title", "???>>>~~~"), "title", "ASC");
+        assertEquals(-1, indexOfAny(cursor, "+/=\n"));
+    }
+
+    @Test
+    void rejectsMalformedCursorsAndOtherSorts() {
+        String cursor = PageCursor.after(book("1", "pubYear", 1999L), "pubYear", "ASC");
+
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(cursor, "pubYear", "DESC"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(cursor, "title", "ASC"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not base64!", "pubYear", "ASC"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode("pubYear ASC\n1"), "pubYear", "ASC"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode("pubYear ASC\n1\nlx"), "pubYear", "ASC"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode(encode("pubYear ASC\n1\nq1"), "pubYear", "ASC"));
+    }
+
+    @Test
+    void seekStartsWithAnIndexableBound() {
+        assertEquals("b.title >= $after AND (b.title > $after OR b.bookId > $afterId)",
+                PageCursor.seek("b", "title", "ASC"));
+        assertEquals("b.averageRating <= $after AND (b.averageRating < $after OR b.bookId > $afterId)",
+                PageCursor.seek("b", "averageRating", "DESC"));
+    }
+
+    private static Node book(String bookId, String property, Object value) {
+        Node node = mock(Node.class);
+        when(node.get("bookId")).thenReturn(Values.value(bookId));
+        when(node.get(property)).thenReturn(Values.value(value));
+        return node;
+    }
+
+    private static String encode(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int indexOfAny(String text, String chars) {
+        for (int i = 0; i < text.length(); i++) {
+            if (chars.indexOf(text.charAt(i)) >= 0) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,136 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.RecommendationProperties.HybridLeg;
+import com.bookfinder.dto.RecommendationDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScoringPipelineTest {
+
+    @Test
+    void normalizations() {
+        List<RecommendationDTO> recs = scored(4.0, 2.0, 1.0, 1.0);
+
+        assertArrayEquals(new double[] {1, 0.5, 0.25, 0.25}, ScoringPipeline.Normalization.MAX.apply(recs), 1e-12);
+        assertArrayEquals(new double[] {1, 0.75, 0.5, 0.25}, ScoringPipeline.Normalization.RANK.apply(recs), 1e-12);
+        // Mean 2, standard deviation sqrt(1.5)
+        double sd = Math.sqrt(1.5);
+        assertArrayEquals(new double[] {2 / sd, 0, -1 / sd, -1 / sd},
+                ScoringPipeline.Normalization.Z_SCORE.apply(recs), 1e-12);
+        assertArrayEquals(new double[0], ScoringPipeline.Normalization.Z_SCORE.apply(List.of()));
+    }
+
+    @Test
+    void zeroVarianceZScoreLegScoresEveryoneAverage() {
+        assertArrayEquals(new double[] {0, 0, 0}, ScoringPipeline.Normalization.Z_SCORE.apply(scored(3.0, 3.0, 3.0)));
+        assertArrayEquals(new double[] {0}, ScoringPipeline.Normalization.Z_SCORE.apply(scored(7.0)));
+
+        Map<String, HybridLeg> legs = legs(leg(0.5, "z-score"), leg(0.5, "max"));
+        ScoringPipeline pipeline = ScoringPipeline.of(legs, null, 3);
+        pipeline.add(pipeline.stages().get(0), recs("a", 3.0, "b", 3.0, "c", 3.0));
+        pipeline.add(pipeline.stages().get(1), recs("c", 4.0, "b", 2.0));
+
+        List<RecommendationDTO> top = pipeline.top(3);
+
+        assertEquals(List.of("c", "b", "a"), bookIds(top));
+        for (RecommendationDTO rec : top) assertTrue(Double.isFinite(rec.getScore()), rec.getBookId());
+        assertEquals(0.5, top.get(0).getScore(), 1e-12);
+        assertEquals(0.0, top.get(2).getScore(), 1e-12);
+    }
+
+    @Test
+    void topDrainsBestFirstWithSources() {
+        Map<String, HybridLeg> legs = legs(leg(0.6, "max"), leg(0.4, "rank"));
+        ScoringPipeline pipeline = ScoringPipeline.of(legs, null, 2);
+        List<RecommendationDTO> graph = new ArrayList<>();
+        for (int i = 0; i < 10; i++) graph.addAll(recs("g" + i, 10.0 - i));
+        pipeline.add(pipeline.stages().get(0), graph);
+        pipeline.add(pipeline.stages().get(1), recs("g5", 1.0, "x", 1.0));
+
+        List<RecommendationDTO> top = pipeline.top(4);
+
+        // g0 0.6; g5 0.6 * 0.5 + 0.4 = 0.7; g1 0.54; g2 0.48
+        assertEquals(List.of("g5", "g0", "g1", "g2"), bookIds(top));
+        assertEquals(List.of("graph", "collaborative"), top.get(0).getSources());
+        assertEquals(List.of("graph"), top.get(1).getSources());
+        assertEquals("hybrid", top.get(0).getStrategy());
+        assertEquals(11, pipeline.top(100).size());
+        assertEquals(0, pipeline.top(0).size());
+    }
+
+    @Test
+    void tiesGoToTheCandidateSeenFirst() {
+        ScoringPipeline pipeline = ScoringPipeline.of(legs(leg(1, "max")), null, 3);
+        pipeline.add(pipeline.stages().get(0), recs("d", 1.0, "b", 1.0, "a", 1.0, "c", 1.0));
+
+        assertEquals(List.of("d", "b", "a"), bookIds(pipeline.top(3)));
+    }
+
+    @Test
+    void weightsOverrideConfiguredLegs() {
+        Map<String, HybridLeg> legs = legs(leg(0.6, "max"), leg(0.4, "rank"));
+        legs.get("collaborative").setFetchFactor(2.5);
+
+        ScoringPipeline configured = ScoringPipeline.of(legs, "", 3);
+        assertEquals(2, configured.stages().size());
+        assertEquals(3 * 2, configured.stages().get(0).fetch());
+        assertEquals(8, configured.stages().get(1).fetch());
+
+        ScoringPipeline overridden = ScoringPipeline.of(legs, "collaborative:1", 3);
+        assertEquals(1, overridden.stages().size());
+        assertEquals("collaborative", overridden.stages().get(0).strategy());
+
+        assertThrows(IllegalArgumentException.class, () -> ScoringPipeline.of(legs, "mood:1", 3));
+        assertThrows(IllegalArgumentException.class, () -> ScoringPipeline.of(legs, "graph:-1", 3));
+        assertThrows(IllegalArgumentException.class, () -> ScoringPipeline.of(legs, "graph", 3));
+    }
+
+    private static HybridLeg leg(double weight, String normalization) {
+        HybridLeg leg = new HybridLeg(weight);
+        leg.setNormalization(normalization);
+        return leg;
+    }
+
+    /** Legs named "graph" and then "collaborative". */
+    private static Map<String, HybridLeg> legs(HybridLeg... legs) {
+        Map<String, HybridLeg> named = new LinkedHashMap<>();
+        String[] names = {"graph", "collaborative"};
+        for (int i = 0; i < legs.length; i++) named.put(names[i], legs[i]);
+        return named;
+    }
+
+    private static List<RecommendationDTO> scored(double... scores) {
+        List<RecommendationDTO> recs = new ArrayList<>();
+        for (int i = 0; i < scores.length; i++) recs.add(rec("b" + i, scores[i]));
+        return recs;
+    }
+
+    /** Recommendations from alternating book IDs and scores. */
+    private static List<RecommendationDTO> recs(Object... idsAndScores) {
+        List<RecommendationDTO> recs = new ArrayList<>();
+        for (int i = 0; i < idsAndScores.length; i += 2) {
+            recs.add(rec((String) idsAndScores[i], (Double) idsAndScores[i + 1]));
+        }
+        return recs;
+    }
+
+    private static RecommendationDTO rec(String bookId, double score) {
+        RecommendationDTO rec = new RecommendationDTO();
+        rec.setBookId(bookId);
+        rec.setScore(score);
+        return rec;
+    }
+
+    private static List<String> bookIds(List<RecommendationDTO> recs) {
+        return recs.stream().map(RecommendationDTO::getBookId).toList();
+    }
+}
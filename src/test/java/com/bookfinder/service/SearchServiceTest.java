@@ -0,0 +1,124 @@
+package com.bookfinder.service;
+
+import com.bookfinder.config.SearchProperties;
+import com.bookfinder.dto.BookSearchResultDTO;
+import com.bookfinder.dto.PaginatedResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Values;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchServiceTest {
+
+    /** A query the fake database answers, with its parameters. */
+    private record Query(String kind, Map<String, Object> params) {}
+
+    private final List<Query> queries = new ArrayList<>();
+    private long matches;
+    private SearchService service;
+
+    @BeforeEach
+    void setUp() {
+        SearchProperties props = new SearchProperties();
+        props.setEstimateCap(100);
+
+        Session session = mock(Session.class);
+        when(session.run(anyString(), anyMap())).thenAnswer(invocation -> {
+            String cypher = invocation.getArgument(0);
+            Map<String, Object> params = invocation.getArgument(1);
+            return answer(cypher, params);
+        });
+        Driver driver = mock(Driver.class);
+        when(driver.session(any(SessionConfig.class))).thenReturn(session);
+
+        service = new SearchService(driver, new CountCache(props), props,
+                mock(AutocompleteIndex.class), mock(SearchFilterIndex.class));
+    }
+
+    @Test
+    void cappedTotalIsRecountedPastItsWindow() {
+        matches = 113;
+
+        PaginatedResponse<BookSearchResultDTO> first = search(0, true);
+        assertEquals(100, first.getTotalElements());
+        assertFalse(first.isTotalExact());
+        assertEquals(List.of("pageAndTotal"), kinds());
+        assertEquals(100L, queries.get(0).params().get("window"));
+
+        // The last page inside the window reuses the cached estimate
+        queries.clear();
+        search(4, true);
+        assertEquals(List.of("page"), kinds());
+
+        // The next one reaches past it and counts again over a wider window
+        queries.clear();
+        PaginatedResponse<BookSearchResultDTO> past = search(5, true);
+        assertEquals(List.of("pageAndTotal"), kinds());
+        assertEquals(120L, queries.get(0).params().get("window"));
+        assertEquals(113, past.getTotalElements());
+        assertTrue(past.isTotalExact());
+
+        // Now exact, so later pages are not recounted
+        queries.clear();
+        search(6, true);
+        assertEquals(List.of("page"), kinds());
+    }
+
+    @Test
+    void exactTotalIsCountedSeparatelyAndCached() {
+        matches = 5000;
+
+        PaginatedResponse<BookSearchResultDTO> first = search(0, false);
+        assertEquals(5000, first.getTotalElements());
+        assertTrue(first.isTotalExact());
+        assertEquals(List.of("count", "page"), kinds());
+
+        queries.clear();
+        search(200, false);
+        assertEquals(List.of("page"), kinds());
+    }
+
+    private PaginatedResponse<BookSearchResultDTO> search(int page, boolean estimateTotal) {
+        return service.search("dragons", page, 20, null, null, null, null, null, estimateTotal);
+    }
+
+    private List<String> kinds() {
+        return queries.stream().map(Query::kind).toList();
+    }
+
+    /** Answers like a database with {@link #matches} hits and no rows to return. */
+    private Result answer(String cypher, Map<String, Object> params) {
+        Result result = mock(Result.class);
+        Record record = mock(Record.class);
+        when(result.single()).thenReturn(record);
+        if (cypher.contains("collect(")) {
+            queries.add(new Query("pageAndTotal", params));
+            long window = (Long) params.get("window");
+            when(record.get("total")).thenReturn(Values.value(Math.min(matches, window)));
+            when(record.get("page")).thenReturn(Values.value(List.of()));
+        } else if (cypher.contains("count(b)")) {
+            queries.add(new Query("count", params));
+            when(record.get("total")).thenReturn(Values.value(matches));
+        } else {
+            queries.add(new Query("page", params));
+        }
+        return result;
+    }
+}